@@ -0,0 +1,5629 @@
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.swing.event.ListSelectionEvent;
+import java.util.List;
+
+/**
+ * Full Exam System with scheduled quizzes.
+ */
+class ExamSystem {
+    public static void main(String[] args) throws IOException {
+        if(args.length > 0 && args[0].equals("--server")) {
+            ExamServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        EdtWatchdog.install();
+        SwingUtilities.invokeLater(LoginFrame::new);
+    }
+
+    // Models
+    static abstract class User implements Serializable {
+        private static final long serialVersionUID = 1L;
+        enum Role { TEACHER, STUDENT }
+        String username, name;
+        // Replaced in place when an older hash is upgraded at login
+        volatile String passwordHash;
+        Role role;
+
+        public User(String username, String name, String passwordHash, Role role) {
+            this.username = username;
+            this.name = name;
+            this.passwordHash = passwordHash;
+            this.role = role;
+        }
+
+        public String getUsername() { return username; }
+        public String getName() { return name; }
+        public String getPasswordHash() { return passwordHash; }
+        public Role getRole() { return role; }
+    }
+
+    static class Teacher extends User {
+        private static final long serialVersionUID = 1L;
+        Teacher(String username, String name, String passwordHash) {
+            super(username, name, passwordHash, Role.TEACHER);
+        }
+    }
+
+    static class Student extends User {
+        private static final long serialVersionUID = 1L;
+        Student(String username, String name, String passwordHash) {
+            super(username, name, passwordHash, Role.STUDENT);
+        }
+    }
+
+    static class Course implements Serializable {
+        private static final long serialVersionUID = 1L;
+        String courseCode, courseName;
+        Set<String> enrolledStudents = ConcurrentHashMap.newKeySet();
+
+        public Course(String code, String name) {
+            this.courseCode = code;
+            this.courseName = name;
+        }
+
+        public boolean enrollStudent(String username) {
+            return enrolledStudents.add(username);
+        }
+
+        public boolean isStudentEnrolled(String username) {
+            return enrolledStudents.contains(username);
+        }
+    }
+
+    // Immutable once stored: editing a question stores a new version under the same ID, and quizzes keep the version they were built with
+    static abstract class Question implements Serializable {
+        private static final long serialVersionUID = 1L;
+        String id, questionText;
+        int marks;
+        // Set by DataManager.addQuestion; questions from before course banks have no course and show in every bank
+        String courseCode;
+        int version;
+
+        public Question(String id, String text, int marks) {
+            this.id = id;
+            this.questionText = text;
+            this.marks = marks;
+        }
+
+        public abstract List<String> getOptions();
+        public abstract int gradeAnswer(String answer);
+
+        // Objective questions keep their answer on the AnswerSheet as a single byte
+        byte encodeAnswer(String answer) { return AnswerSheet.INVALID; }
+        int gradeChoice(byte choice) { return 0; }
+        String decodeAnswer(byte choice) { return null; }
+        // How a stored choice is shown in item analysis
+        String choiceLabel(byte choice) { return decodeAnswer(choice); }
+
+        public String getId() { return id; }
+        public String getText() { return questionText; }
+        public int getMarks() { return marks; }
+        public int getVersion() { return version; }
+    }
+
+    static class MCQQuestion extends Question {
+        private static final long serialVersionUID = 1L;
+        List<String> options;
+        int correctIndex;
+
+        public MCQQuestion(String id, String text, int marks, List<String> options, int correctIndex) {
+            super(id, text, marks);
+            this.options = options;
+            this.correctIndex = correctIndex;
+        }
+
+        @Override
+        public List<String> getOptions() { return options; }
+
+        @Override
+        public int gradeAnswer(String answer) {
+            try {
+                int ans = Integer.parseInt(answer);
+                return ans == correctIndex ? marks : 0;
+            } catch(Exception e) {
+                return 0;
+            }
+        }
+
+        @Override
+        byte encodeAnswer(String answer) {
+            try {
+                int ans = Integer.parseInt(answer);
+                return ans >= 0 && ans <= Byte.MAX_VALUE ? (byte) ans : AnswerSheet.INVALID;
+            } catch(Exception e) {
+                return AnswerSheet.INVALID;
+            }
+        }
+
+        @Override
+        int gradeChoice(byte choice) { return choice == correctIndex ? marks : 0; }
+
+        @Override
+        String decodeAnswer(byte choice) { return choice >= 0 ? String.valueOf(choice) : null; }
+
+        @Override
+        String choiceLabel(byte choice) { return choice >= 0 && choice < options.size() ? options.get(choice) : decodeAnswer(choice); }
+    }
+
+    static class TrueFalseQuestion extends Question {
+        private static final long serialVersionUID = 1L;
+        boolean correctAnswer;
+
+        public TrueFalseQuestion(String id, String text, int marks, boolean correctAnswer) {
+            super(id, text, marks);
+            this.correctAnswer = correctAnswer;
+        }
+
+        @Override
+        public List<String> getOptions() {
+            return Arrays.asList("True", "False");
+        }
+
+        @Override
+        public int gradeAnswer(String answer) {
+            return gradeChoice(encodeAnswer(answer));
+        }
+
+        // Stored as the option index, 0 for True and 1 for False, like an MCQ. QuizAttemptFrame sends that index
+        // and the server and older stores send "true"/"false"; this is the one place both are read.
+        @Override
+        byte encodeAnswer(String answer) {
+            if(answer == null) return AnswerSheet.INVALID;
+            if(answer.equals("0") || answer.equalsIgnoreCase("true")) return 0;
+            if(answer.equals("1") || answer.equalsIgnoreCase("false")) return 1;
+            return AnswerSheet.INVALID;
+        }
+
+        @Override
+        int gradeChoice(byte choice) {
+            if(choice != 0 && choice != 1) return 0;
+            return ((choice == 0) == correctAnswer) ? marks : 0;
+        }
+
+        @Override
+        String decodeAnswer(byte choice) { return choice == 0 || choice == 1 ? String.valueOf(choice == 0) : null; }
+
+        @Override
+        String choiceLabel(byte choice) { return choice == 0 || choice == 1 ? getOptions().get(choice) : null; }
+    }
+
+    static class ShortAnswerQuestion extends Question {
+        private static final long serialVersionUID = 1L;
+        List<String> keywords;
+        // Compiled on first use; immutable, so a racy rebuild on another thread is harmless
+        transient volatile KeywordMatcher matcher;
+
+        public ShortAnswerQuestion(String id, String text, int marks, List<String> keywords) {
+            super(id, text, marks);
+            this.keywords = keywords;
+        }
+
+        @Override
+        public List<String> getOptions() { return null; }
+
+        // Marks are proportional to how many listed keywords occur in the answer, ignoring case
+        @Override
+        public int gradeAnswer(String answer) {
+            if(answer == null) return 0;
+            KeywordMatcher m = matcher;
+            if(m == null) matcher = m = new KeywordMatcher(keywords);
+            return marks * m.countFound(answer) / keywords.size();
+        }
+    }
+
+    // Aho-Corasick automaton over a keyword list, counting how many keywords occur in a text in one pass.
+    // Agrees exactly with text.toLowerCase().contains(keyword.toLowerCase()) per keyword, duplicates included.
+    static class KeywordMatcher {
+        final byte[] asciiClass = new byte[128]; // A-Z share the class of a-z
+        final char[] otherChars;        // sorted non-ASCII characters that occur in keywords
+        final int asciiClasses;
+        final int width;                // character classes; class 0 is "in no keyword"
+        final int[] delta;              // state * width + class -> next state * width, complemented if a keyword ends there
+        final long[] found;             // state -> bitset of unique keywords ending there, words per state
+        final int words;
+        final int[] weights;            // unique keyword -> occurrences in the original list
+        final int alwaysFound;          // empty keywords match every answer
+        // Folding A-Z per char only matches String.toLowerCase() when the default locale maps 'I' to 'i'
+        final boolean asciiFastPath = "I".toLowerCase().equals("i");
+
+        KeywordMatcher(List<String> keywords) {
+            Map<String, Integer> unique = new LinkedHashMap<>();
+            int empty = 0;
+            for(String kw : keywords) {
+                String lower = kw.toLowerCase();
+                if(lower.isEmpty()) empty++;
+                else unique.merge(lower, 1, Integer::sum);
+            }
+            alwaysFound = empty;
+            String[] kws = unique.keySet().toArray(new String[0]);
+            weights = new int[kws.length];
+            for(int i = 0; i < kws.length; i++) weights[i] = unique.get(kws[i]);
+            words = Math.max(1, (kws.length + 63) / 64);
+
+            TreeSet<Character> others = new TreeSet<>();
+            int classes = 1, states = 1;
+            for(String kw : kws) {
+                states += kw.length();
+                for(int i = 0; i < kw.length(); i++) {
+                    char c = kw.charAt(i);
+                    if(c >= 128) others.add(c);
+                    else if(asciiClass[c] == 0) asciiClass[c] = (byte) classes++;
+                }
+            }
+            for(char c = 'A'; c <= 'Z'; c++) asciiClass[c] = asciiClass[c + 32];
+            otherChars = new char[others.size()];
+            int k = 0;
+            for(char c : others) otherChars[k++] = c;
+            asciiClasses = classes;
+            width = classes + otherChars.length;
+
+            // Trie, then failure links in BFS order folded into a complete transition table
+            int[] trie = new int[states * width];
+            Arrays.fill(trie, -1);
+            long[] out = new long[states * words];
+            int next = 1;
+            for(int w = 0; w < kws.length; w++) {
+                int s = 0;
+                for(int i = 0; i < kws[w].length(); i++) {
+                    int slot = s * width + classOf(kws[w].charAt(i));
+                    if(trie[slot] < 0) trie[slot] = next++;
+                    s = trie[slot];
+                }
+                out[s * words + (w >> 6)] |= 1L << (w & 63);
+            }
+            int[] goTo = new int[next * width];
+            int[] fail = new int[next];
+            int[] queue = new int[next];
+            int head = 0, tail = 0;
+            for(int c = 0; c < width; c++) {
+                int t = trie[c];
+                goTo[c] = t < 0 ? 0 : t;
+                if(t > 0) queue[tail++] = t;
+            }
+            while(head < tail) {
+                int s = queue[head++];
+                for(int w = 0; w < words; w++) out[s * words + w] |= out[fail[s] * words + w];
+                for(int c = 0; c < width; c++) {
+                    int t = trie[s * width + c];
+                    if(t < 0) {
+                        goTo[s * width + c] = goTo[fail[s] * width + c];
+                    } else {
+                        goTo[s * width + c] = t;
+                        fail[t] = goTo[fail[s] * width + c];
+                        queue[tail++] = t;
+                    }
+                }
+            }
+            found = Arrays.copyOf(out, next * words);
+            delta = new int[next * width];
+            for(int i = 0; i < delta.length; i++) {
+                int t = goTo[i];
+                boolean accepting = false;
+                for(int w = 0; w < words; w++) accepting |= found[t * words + w] != 0;
+                delta[i] = accepting ? ~(t * width) : t * width;
+            }
+        }
+
+        int classOf(char c) {
+            if(c < 128) return asciiClass[c];
+            int i = Arrays.binarySearch(otherChars, c);
+            return i < 0 ? 0 : asciiClasses + i;
+        }
+
+        int countFound(String text) {
+            if(asciiFastPath) {
+                int r = scan(text, true);
+                if(r >= 0) return r;
+            }
+            // Non-ASCII text: lowercase it as the original comparison did, then scan that
+            return scan(text.toLowerCase(), false);
+        }
+
+        // Returns -1 when the ASCII-only pass meets a non-ASCII character
+        int scan(String text, boolean asciiOnly) {
+            byte[] cls = asciiClass;
+            int[] delta = this.delta;
+            int width = this.width, s = 0;
+            if(words == 1) {
+                // Up to 64 unique keywords: the seen set is a single long and the scan allocates nothing
+                long all = weights.length == 64 ? -1L : (1L << weights.length) - 1, seen = 0;
+                for(int i = 0, n = text.length(); i < n; i++) {
+                    char c = text.charAt(i);
+                    int t;
+                    if(c < 128) t = delta[s + cls[c]];
+                    else if(asciiOnly) return -1;
+                    else t = delta[s + classOf(c)];
+                    if(t < 0) {
+                        t = ~t;
+                        seen |= found[t / width];
+                        if(seen == all) break;
+                    }
+                    s = t;
+                }
+                int total = alwaysFound;
+                for(int w = 0; w < weights.length; w++) if((seen & (1L << w)) != 0) total += weights[w];
+                return total;
+            }
+            long[] seen = new long[words];
+            for(int i = 0, n = text.length(); i < n; i++) {
+                char c = text.charAt(i);
+                int t;
+                if(c < 128) t = delta[s + cls[c]];
+                else if(asciiOnly) return -1;
+                else t = delta[s + classOf(c)];
+                if(t < 0) {
+                    t = ~t;
+                    int base = t / width * words;
+                    for(int w = 0; w < words; w++) seen[w] |= found[base + w];
+                }
+                s = t;
+            }
+            int total = alwaysFound;
+            for(int w = 0; w < weights.length; w++) if((seen[w >> 6] & (1L << (w & 63))) != 0) total += weights[w];
+            return total;
+        }
+    }
+
+    static class Quiz implements Serializable {
+        private static final long serialVersionUID = 1L;
+        String id, courseCode;
+        Date startTime;
+        int durationMinutes;
+        // Replaced as a whole, never modified in place, when the quiz is rebound to newer question versions
+        volatile List<Question> questions;
+        // Question references as decoded, resolved against the question store by DataManager
+        transient String[] questionIds;
+        transient int[] questionVersions;
+        // Seeds each student's Paper; 0 means everyone sees the questions and options in stored order
+        long shuffleSeed;
+        transient volatile Map<String, Paper> papers;
+
+        public Quiz(String id, String courseCode, Date startTime, int durationMinutes, List<Question> questions) {
+            this.id = id;
+            this.courseCode = courseCode;
+            this.startTime = startTime;
+            this.durationMinutes = durationMinutes;
+            this.questions = questions;
+        }
+
+        public boolean isActive(Date now) {
+            long start = startTime.getTime();
+            long end = getEndTime();
+            return now.getTime() >= start && now.getTime() <= end;
+        }
+
+        public long getEndTime() {
+            return startTime.getTime() + durationMinutes * 60 * 1000L;
+        }
+
+        public int getTotalMarks() {
+            int total = 0;
+            for(Question q : questions) total += q.marks;
+            return total;
+        }
+
+        // Unanswered questions are graded as an empty answer
+        public int grade(AnswerSheet sheet) {
+            return grade(sheet, null);
+        }
+
+        // Keyword matching is the only grading that costs more than a table lookup, so it is the part timed
+        static final Metrics.Histogram SHORT_ANSWER = Metrics.histogram("Grading.shortAnswer");
+
+        // Also leaves each question's marks in scores, when given
+        int grade(AnswerSheet sheet, int[] scores) {
+            byte[] choices = sheet.choices;
+            int obtained = 0, text = 0;
+            for(int i = 0, n = questions.size(); i < n; i++) {
+                Question q = questions.get(i);
+                byte c = i < choices.length ? choices[i] : AnswerSheet.UNANSWERED;
+                int score = 0;
+                if(q instanceof ShortAnswerQuestion) {
+                    long start = System.nanoTime();
+                    if(c == AnswerSheet.TEXT) score = q.gradeAnswer(sheet.texts[text++]);
+                    else if(c == AnswerSheet.UNANSWERED) score = q.gradeAnswer("");
+                    SHORT_ANSWER.recordSince(start);
+                } else {
+                    score = q.gradeChoice(c);
+                }
+                if(scores != null) scores[i] = score;
+                obtained += score;
+            }
+            return obtained;
+        }
+    }
+
+    // One student's copy of a quiz: the order its questions are shown in and, for each MCQ, the order of the options.
+    // Both follow from the quiz seed and the username, so papers are never stored; any process rebuilds the same one.
+    // Answers are translated back to Quiz.questions order and original option indexes before they reach an
+    // AnswerSheet, so grading against correctIndex, regrading and item analysis never see the shuffle.
+    static class Paper {
+        final int[] order;          // shown position -> index in Quiz.questions
+        final byte[][] options;     // per question index: shown option -> original option, null when not shuffled
+
+        Paper(int[] order, byte[][] options) {
+            this.order = order;
+            this.options = options;
+        }
+
+        static Paper of(Quiz quiz, String username) {
+            if(quiz.shuffleSeed == 0) return generate(quiz, null);
+            Map<String, Paper> cache = quiz.papers;
+            if(cache == null) {
+                synchronized (quiz) {
+                    if(quiz.papers == null) quiz.papers = new ConcurrentHashMap<>();
+                    cache = quiz.papers;
+                }
+            }
+            return cache.computeIfAbsent(DataManager.key(username), k -> generate(quiz, k));
+        }
+
+        // Builds a cohort's papers on the common pool when the quiz is created, so opening an attempt finds its paper ready
+        static void generateAll(Quiz quiz, Collection<String> usernames) {
+            if(quiz.shuffleSeed != 0) usernames.parallelStream().forEach(u -> of(quiz, u));
+        }
+
+        // Fisher-Yates over a generator seeded with the quiz seed and a 64-bit FNV-1a hash of the username
+        static Paper generate(Quiz quiz, String key) {
+            int n = quiz.questions.size();
+            int[] order = new int[n];
+            byte[][] options = new byte[n][];
+            for(int i = 0; i < n; i++) order[i] = i;
+            if(key == null) return new Paper(order, options);
+            long h = 0xcbf29ce484222325L ^ quiz.shuffleSeed;
+            for(int i = 0; i < key.length(); i++) h = (h ^ key.charAt(i)) * 0x100000001b3L;
+            SplittableRandom random = new SplittableRandom(h);
+            for(int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1), t = order[i];
+                order[i] = order[j];
+                order[j] = t;
+            }
+            for(int i = 0; i < n; i++) {
+                Question q = quiz.questions.get(i);
+                if(!(q instanceof MCQQuestion)) continue;
+                int k = Math.min(q.getOptions().size(), Byte.MAX_VALUE + 1);
+                byte[] shown = new byte[k];
+                for(int o = 0; o < k; o++) shown[o] = (byte) o;
+                for(int o = k - 1; o > 0; o--) {
+                    int j = random.nextInt(o + 1);
+                    byte t = shown[o];
+                    shown[o] = shown[j];
+                    shown[j] = t;
+                }
+                options[i] = shown;
+            }
+            return new Paper(order, options);
+        }
+
+        int originalOption(int question, int shown) {
+            byte[] o = options[question];
+            return o == null || shown < 0 || shown >= o.length ? shown : o[shown];
+        }
+
+        int shownOption(int question, int original) {
+            byte[] o = options[question];
+            if(o == null) return original;
+            for(int i = 0; i < o.length; i++) if(o[i] == original) return i;
+            return original;
+        }
+    }
+
+    // A result's answers in Quiz.questions order: one byte per question, with short answer texts kept alongside
+    static class AnswerSheet implements Serializable {
+        private static final long serialVersionUID = 1L;
+        // Slot values besides an MCQ or True/False option index
+        static final byte TEXT = 0, UNANSWERED = -1, INVALID = -2;
+        static final AnswerSheet EMPTY = new AnswerSheet(new byte[0], new String[0]);
+
+        final byte[] choices;
+        final String[] texts;    // one per TEXT slot, in order
+
+        AnswerSheet(byte[] choices, String[] texts) {
+            this.choices = choices;
+            this.texts = texts;
+        }
+
+        // Answers keyed by question ID, as collected by QuizAttemptFrame and the server
+        static AnswerSheet of(Quiz quiz, Map<String, String> answers) {
+            if(quiz == null) return EMPTY;
+            int n = quiz.questions.size();
+            byte[] choices = new byte[n];
+            List<String> texts = new ArrayList<>();
+            for(int i = 0; i < n; i++) {
+                Question q = quiz.questions.get(i);
+                if(!answers.containsKey(q.getId())) {
+                    choices[i] = UNANSWERED;
+                } else if(q instanceof ShortAnswerQuestion) {
+                    String text = answers.get(q.getId());
+                    choices[i] = text == null ? INVALID : TEXT;
+                    if(text != null) texts.add(text);
+                } else {
+                    choices[i] = q.encodeAnswer(answers.get(q.getId()));
+                }
+            }
+            return new AnswerSheet(choices, texts.isEmpty() ? EMPTY.texts : texts.toArray(new String[0]));
+        }
+
+        // Sheets written before Codec version 6 held 1 for true and 0 for false, or for anything else
+        void trueFalseToOptionIndex(Quiz quiz) {
+            if(quiz == null) return;
+            for(int i = 0; i < choices.length && i < quiz.questions.size(); i++)
+                if(quiz.questions.get(i) instanceof TrueFalseQuestion && (choices[i] == 0 || choices[i] == 1)) choices[i] = (byte) (1 - choices[i]);
+        }
+
+        // The answer to question i in its original string form, or null if none was given
+        String answer(Quiz quiz, int i) {
+            if(i >= choices.length || choices[i] == UNANSWERED || choices[i] == INVALID) return null;
+            Question q = quiz.questions.get(i);
+            if(!(q instanceof ShortAnswerQuestion)) return q.decodeAnswer(choices[i]);
+            int text = 0;
+            for(int j = 0; j < i; j++)
+                if(choices[j] == TEXT && quiz.questions.get(j) instanceof ShortAnswerQuestion) text++;
+            return texts[text];
+        }
+    }
+
+    static class Result implements Serializable {
+        private static final long serialVersionUID = 1L;
+        String quizId, studentUsername;
+        AnswerSheet sheet = AnswerSheet.EMPTY;
+        volatile int marksObtained = 0;
+        // Answers keyed by question ID from stores older than the answer sheet; DataManager converts them on load
+        transient Map<String, String> legacyAnswers;
+        // Read from a store older than version 6, whose True/False slots hold 1 for true; DataManager converts it on load
+        transient boolean trueFalseAsBoolean;
+
+        public Result(String quizId, String studentUsername) {
+            this.quizId = quizId;
+            this.studentUsername = studentUsername;
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            ObjectInputStream.GetField f = in.readFields();
+            quizId = (String) f.get("quizId", null);
+            studentUsername = (String) f.get("studentUsername", null);
+            marksObtained = f.get("marksObtained", 0);
+            sheet = (AnswerSheet) f.get("sheet", AnswerSheet.EMPTY);
+            trueFalseAsBoolean = f.getObjectStreamClass().getField("sheet") != null;
+            if(f.getObjectStreamClass().getField("answers") != null) {
+                @SuppressWarnings("unchecked")
+                Map<String, String> answers = (Map<String, String>) f.get("answers", null);
+                legacyAnswers = answers != null ? answers : new HashMap<>();
+            }
+        }
+    }
+
+    // Running marks summary for one quiz, kept up to date by DataManager as results arrive so views never rescan them
+    // Item analysis comes from running sums too, so each result costs O(1) per question whatever the cohort size.
+    static class QuizStats {
+        int count, min, max;
+        long sum;
+        double mean, m2;                // Welford's running mean and sum of squared deviations
+        int[] histogram = new int[0];   // results per mark obtained
+        // Results whose quiz was known, so their answers could be scored per question, and their totals
+        int graded;
+        long gradedSum, gradedSumSq;
+        ItemStats[] items = new ItemStats[0];
+
+        // One question of the quiz; x is the question's marks and y the result's total
+        static class ItemStats {
+            long sumX, sumXSq, sumXY;
+            int[] choices = new int[0];    // MCQ and True/False answers per stored choice
+            int unanswered;
+
+            ItemStats copy() {
+                ItemStats c = new ItemStats();
+                c.sumX = sumX;
+                c.sumXSq = sumXSq;
+                c.sumXY = sumXY;
+                c.choices = choices.clone();
+                c.unanswered = unanswered;
+                return c;
+            }
+        }
+
+        synchronized void add(int marks) {
+            min = count == 0 ? marks : Math.min(min, marks);
+            max = count == 0 ? marks : Math.max(max, marks);
+            count++;
+            sum += marks;
+            double delta = marks - mean;
+            mean += delta / count;
+            m2 += delta * (marks - mean);
+            if(marks >= 0) {
+                if(marks >= histogram.length) histogram = Arrays.copyOf(histogram, Math.max(marks + 1, histogram.length * 2));
+                histogram[marks]++;
+            }
+        }
+
+        synchronized void add(Result r, Quiz quiz) {
+            add(r.marksObtained);
+            if(quiz == null) return;
+            int n = quiz.questions.size();
+            if(items.length < n) {
+                items = Arrays.copyOf(items, n);
+                for(int i = 0; i < n; i++) if(items[i] == null) items[i] = new ItemStats();
+            }
+            int[] scores = new int[n];
+            quiz.grade(r.sheet, scores);
+            long y = r.marksObtained;
+            graded++;
+            gradedSum += y;
+            gradedSumSq += y * y;
+            byte[] choices = r.sheet.choices;
+            for(int i = 0; i < n; i++) {
+                ItemStats item = items[i];
+                long x = scores[i];
+                item.sumX += x;
+                item.sumXSq += x * x;
+                item.sumXY += x * y;
+                if(quiz.questions.get(i) instanceof ShortAnswerQuestion) continue;
+                byte c = i < choices.length ? choices[i] : AnswerSheet.UNANSWERED;
+                if(c < 0) {
+                    item.unanswered++;
+                } else {
+                    if(c >= item.choices.length) item.choices = Arrays.copyOf(item.choices, c + 1);
+                    item.choices[c]++;
+                }
+            }
+        }
+
+        synchronized QuizStats copy() {
+            QuizStats c = new QuizStats();
+            c.count = count;
+            c.min = min;
+            c.max = max;
+            c.sum = sum;
+            c.mean = mean;
+            c.m2 = m2;
+            c.histogram = histogram.clone();
+            c.graded = graded;
+            c.gradedSum = gradedSum;
+            c.gradedSumSq = gradedSumSq;
+            c.items = new ItemStats[items.length];
+            for(int i = 0; i < items.length; i++) c.items[i] = items[i].copy();
+            return c;
+        }
+
+        double mean() { return mean; }
+
+        double stdDev() { return count < 2 ? 0 : Math.sqrt(m2 / (count - 1)); }
+
+        // Share of the question's marks the cohort earned: 1 is easy, 0 is hard
+        double difficulty(int item, int marks) {
+            return graded == 0 || marks == 0 ? Double.NaN : (double) items[item].sumX / ((long) graded * marks);
+        }
+
+        // Correlation between the question's marks and the rest of the total (the total minus that question),
+        // which is the point-biserial coefficient for right/wrong questions. NaN when either side never varies.
+        double discrimination(int item) {
+            ItemStats s = items[item];
+            double n = graded;
+            double sumRest = gradedSum - s.sumX;
+            double sumRestSq = gradedSumSq - 2.0 * s.sumXY + s.sumXSq;
+            double sumXRest = s.sumXY - s.sumXSq;
+            double cov = n * sumXRest - (double) s.sumX * sumRest;
+            double varX = n * s.sumXSq - (double) s.sumX * s.sumX;
+            double varRest = n * sumRestSq - sumRest * sumRest;
+            return varX <= 0 || varRest <= 0 ? Double.NaN : cov / Math.sqrt(varX * varRest);
+        }
+    }
+
+    // New marks for the results of one quiz, persisted as a single journal record
+    static class RegradeBatch {
+        final String quizId;
+        final String[] usernames;
+        final int[] marks;
+
+        RegradeBatch(String quizId, String[] usernames, int[] marks) {
+            this.quizId = quizId;
+            this.usernames = usernames;
+            this.marks = marks;
+        }
+    }
+
+    // The question versions a quiz is graded against from now on, by position. Quizzes keep the versions they were
+    // created with until a teacher regrades against edited ones; this record then precedes the regrade's marks.
+    static class Rebind {
+        final String quizId;
+        final int[] versions;
+
+        Rebind(String quizId, int[] versions) {
+            this.quizId = quizId;
+            this.versions = versions;
+        }
+    }
+
+    // Recomputes marksObtained for every result of a quiz, fanned out over the common ForkJoin pool
+    static class Regrader {
+        interface Progress { void update(int done, int total); }
+
+        static final Metrics.Histogram REGRADE = Metrics.histogram("Grading.regrade");
+
+        // Returns only the results whose marks changed; nothing is modified until DataManager.applyRegrade
+        static RegradeBatch regrade(Quiz quiz, List<Result> results, Progress progress) {
+            return regrade(quiz, quiz.questions, results, progress);
+        }
+
+        // Grades against `questions`, which may be newer versions of the quiz's own, e.g. after an answer key was fixed
+        static RegradeBatch regrade(Quiz quiz, List<Question> questions, List<Result> results, Progress progress) {
+            long start = System.nanoTime();
+            Quiz key = questions == quiz.questions ? quiz : new Quiz(quiz.id, quiz.courseCode, quiz.startTime, quiz.durationMinutes, questions);
+            int n = results.size();
+            int[] marks = new int[n];
+            boolean[] changed = new boolean[n];
+            java.util.concurrent.atomic.AtomicInteger done = new java.util.concurrent.atomic.AtomicInteger();
+            int step = Math.max(1, n / 100);
+            java.util.stream.IntStream.range(0, n).parallel().forEach(i -> {
+                Result r = results.get(i);
+                marks[i] = key.grade(r.sheet);
+                changed[i] = marks[i] != r.marksObtained;
+                int d = done.incrementAndGet();
+                if(progress != null && (d % step == 0 || d == n)) progress.update(d, n);
+            });
+            int count = 0;
+            for(boolean c : changed) if(c) count++;
+            String[] usernames = new String[count];
+            int[] newMarks = new int[count];
+            for(int i = 0, j = 0; i < n; i++) {
+                if(!changed[i]) continue;
+                usernames[j] = results.get(i).studentUsername;
+                newMarks[j++] = marks[i];
+            }
+            REGRADE.recordSince(start);
+            return new RegradeBatch(quiz.id, usernames, newMarks);
+        }
+    }
+
+    // Writes results as CSV or XLSX one row at a time, reading the stored results in place and writing through a
+    // buffered file channel, so memory stays flat however large the cohort. Rows go to a temporary file that
+    // replaces the target only once the export completes.
+    static class ResultExporter {
+        enum Format { CSV, XLSX }
+
+        interface RowWriter extends Closeable {
+            void cell(String value) throws IOException;
+            void cell(long value) throws IOException;
+            void endRow() throws IOException;
+        }
+
+        final List<Quiz> quizzes;
+        final File target;
+        final Format format;
+
+        ResultExporter(List<Quiz> quizzes, File target) {
+            this.quizzes = quizzes;
+            this.target = target;
+            this.format = target.getName().toLowerCase(Locale.ROOT).endsWith(".xlsx") ? Format.XLSX : Format.CSV;
+        }
+
+        int total() {
+            int n = 0;
+            for(Quiz q : quizzes) n += dm.getResultsByQuiz(q.id).size();
+            return n;
+        }
+
+        // One row per result: quiz, course, student, marks, then each question's answer and marks.
+        // Returns the number of rows written; throws CancellationException once cancelled returns true.
+        int export(Regrader.Progress progress, java.util.function.BooleanSupplier cancelled) throws IOException {
+            int width = 0, total = total(), done = 0, step = Math.max(1, total / 100);
+            for(Quiz q : quizzes) width = Math.max(width, q.questions.size());
+            File tmp = new File(target.getAbsoluteFile().getParentFile(), target.getName() + ".part");
+            boolean complete = false;
+            try (java.nio.channels.FileChannel ch = java.nio.channels.FileChannel.open(tmp.toPath(),
+                    java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.TRUNCATE_EXISTING,
+                    java.nio.file.StandardOpenOption.WRITE);
+                 RowWriter out = format == Format.XLSX
+                         ? new XlsxWriter(java.nio.channels.Channels.newOutputStream(ch))
+                         : new CsvWriter(java.nio.channels.Channels.newOutputStream(ch))) {
+                for(String h : new String[]{"Quiz", "Course", "Student", "Marks", "Out Of"}) out.cell(h);
+                for(int i = 1; i <= width; i++) {
+                    out.cell("Q" + i + " Answer");
+                    out.cell("Q" + i + " Marks");
+                }
+                out.endRow();
+                int[] scores = new int[width];
+                for(Quiz quiz : quizzes) {
+                    int n = quiz.questions.size(), outOf = quiz.getTotalMarks();
+                    for(Result r : dm.getResultsByQuiz(quiz.id)) {
+                        if(cancelled.getAsBoolean()) throw new CancellationException();
+                        quiz.grade(r.sheet, scores);
+                        out.cell(quiz.id);
+                        out.cell(quiz.courseCode);
+                        out.cell(r.studentUsername);
+                        out.cell(r.marksObtained);
+                        out.cell(outOf);
+                        for(int i = 0; i < width; i++) {
+                            if(i < n) {
+                                out.cell(answerText(quiz, r.sheet, i));
+                                out.cell(scores[i]);
+                            } else {
+                                out.cell("");
+                                out.cell("");
+                            }
+                        }
+                        out.endRow();
+                        if(++done % step == 0 || done == total) progress.update(done, total);
+                    }
+                }
+                complete = true;
+            } finally {
+                if(!complete) tmp.delete();
+            }
+            java.nio.file.Files.move(tmp.toPath(), target.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            return done;
+        }
+
+        // Choices as the student saw them, short answers as typed
+        static String answerText(Quiz quiz, AnswerSheet sheet, int i) {
+            Question q = quiz.questions.get(i);
+            if(q instanceof ShortAnswerQuestion) {
+                String text = sheet.answer(quiz, i);
+                return text == null ? "" : text;
+            }
+            byte c = i < sheet.choices.length ? sheet.choices[i] : AnswerSheet.UNANSWERED;
+            String label = c >= 0 ? q.choiceLabel(c) : null;
+            return label == null ? "" : label;
+        }
+
+        static class CsvWriter implements RowWriter {
+            final java.io.Writer out;
+            boolean first = true;
+
+            CsvWriter(OutputStream os) {
+                out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 1 << 16);
+            }
+
+            @Override
+            public void cell(String value) throws IOException {
+                if(!first) out.write(',');
+                first = false;
+                // Text a spreadsheet would evaluate as a formula is prefixed with a quote
+                if(!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0) value = "'" + value;
+                boolean quote = false;
+                for(int i = 0; i < value.length() && !quote; i++) {
+                    char ch = value.charAt(i);
+                    quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+                }
+                if(!quote) {
+                    out.write(value);
+                    return;
+                }
+                out.write('"');
+                out.write(value.replace("\"", "\"\""));
+                out.write('"');
+            }
+
+            @Override
+            public void cell(long value) throws IOException {
+                if(!first) out.write(',');
+                first = false;
+                out.write(Long.toString(value));
+            }
+
+            @Override
+            public void endRow() throws IOException {
+                out.write("\r\n");
+                first = true;
+            }
+
+            @Override
+            public void close() throws IOException { out.close(); }
+        }
+
+        // The smallest SpreadsheetML package Excel and LibreOffice open: one worksheet of inline strings and numbers,
+        // with the fixed parts written up front and the sheet streamed as the last zip entry
+        static class XlsxWriter implements RowWriter {
+            static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+            static final String REL_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+            static final String DOC_REL = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+            static final String XML_DECL = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+            static final int MAX_ROWS = 1_048_576;
+
+            final java.util.zip.ZipOutputStream zip;
+            final java.io.Writer out;
+            int rows;
+            boolean rowOpen;
+
+            XlsxWriter(OutputStream os) throws IOException {
+                zip = new java.util.zip.ZipOutputStream(new BufferedOutputStream(os, 1 << 16));
+                out = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 1 << 16);
+                part("[Content_Types].xml", "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                        + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                        + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                        + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+                        + "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+                        + "</Types>");
+                part("_rels/.rels", "<Relationships xmlns=\"" + REL_NS + "\">"
+                        + "<Relationship Id=\"rId1\" Type=\"" + DOC_REL + "/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                        + "</Relationships>");
+                part("xl/workbook.xml", "<workbook xmlns=\"" + MAIN_NS + "\" xmlns:r=\"" + DOC_REL + "\">"
+                        + "<sheets><sheet name=\"Results\" sheetId=\"1\" r:id=\"rId1\"/></sheets></workbook>");
+                part("xl/_rels/workbook.xml.rels", "<Relationships xmlns=\"" + REL_NS + "\">"
+                        + "<Relationship Id=\"rId1\" Type=\"" + DOC_REL + "/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+                        + "</Relationships>");
+                zip.putNextEntry(new java.util.zip.ZipEntry("xl/worksheets/sheet1.xml"));
+                out.write(XML_DECL);
+                out.write("<worksheet xmlns=\"" + MAIN_NS + "\"><sheetData>");
+            }
+
+            void part(String name, String xml) throws IOException {
+                zip.putNextEntry(new java.util.zip.ZipEntry(name));
+                out.write(XML_DECL);
+                out.write(xml);
+                out.flush();
+                zip.closeEntry();
+            }
+
+            void startCell() throws IOException {
+                if(rowOpen) return;
+                if(rows == MAX_ROWS) throw new IOException("More than " + MAX_ROWS + " rows; export to CSV instead");
+                out.write("<row>");
+                rowOpen = true;
+            }
+
+            @Override
+            public void cell(String value) throws IOException {
+                startCell();
+                if(value.isEmpty()) {
+                    out.write("<c/>");
+                    return;
+                }
+                out.write("<c t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+                for(int i = 0; i < value.length(); i++) {
+                    char ch = value.charAt(i);
+                    switch(ch) {
+                        case '<': out.write("&lt;"); break;
+                        case '>': out.write("&gt;"); break;
+                        case '&': out.write("&amp;"); break;
+                        default:
+                            // Control characters other than tab and line breaks are not allowed in XML 1.0
+                            if(ch >= 0x20 || ch == '\t' || ch == '\n' || ch == '\r') out.write(ch);
+                    }
+                }
+                out.write("</t></is></c>");
+            }
+
+            @Override
+            public void cell(long value) throws IOException {
+                startCell();
+                out.write("<c><v>");
+                out.write(Long.toString(value));
+                out.write("</v></c>");
+            }
+
+            @Override
+            public void endRow() throws IOException {
+                startCell();
+                out.write("</row>");
+                rowOpen = false;
+                rows++;
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.write("</sheetData></worksheet>");
+                out.flush();
+                zip.closeEntry();
+                zip.close();
+            }
+        }
+    }
+
+    // Reads users, enrollments or questions from a CSV file with a header row, one record at a time, checking each
+    // against the stored indexes and the rows before it. Rows that fail are reported by line and skipped; the rest
+    // go to DataManager.commitBatch together. Passwords are hashed on the hashing pool while parsing continues.
+    static class BulkImporter {
+        enum Kind {
+            USERS("username", "name", "password", "role"),
+            ENROLLMENTS("course", "username"),
+            QUESTIONS("course", "type", "id", "text", "marks", "options", "answer");
+
+            final String[] columns;
+
+            Kind(String... columns) { this.columns = columns; }
+        }
+
+        // Imported passwords are usually temporary, so they start at a lower cost;
+        // DataManager.authenticate raises them to the full cost at the first login
+        static final int HASH_ITERATIONS = Integer.getInteger("exam.importPbkdf2Iterations", 1_000);
+        static final int MAX_ERRORS = 100;
+
+        final Kind kind;
+        final List<String> errors = new ArrayList<>();
+        int rows, rejected, applied;
+
+        BulkImporter(Kind kind) { this.kind = kind; }
+
+        // RFC 4180 records from a character stream, quoted fields spanning lines included
+        static class CsvReader {
+            final Reader in;
+            int line = 1, recordLine;
+            int peeked = -2;
+
+            CsvReader(Reader in) { this.in = in; }
+
+            int read() throws IOException {
+                if(peeked != -2) {
+                    int c = peeked;
+                    peeked = -2;
+                    return c;
+                }
+                int c = in.read();
+                if(c == '\n') line++;
+                return c;
+            }
+
+            // Null at end of input
+            List<String> next() throws IOException {
+                int c = read();
+                while(c == '\r' || c == '\n') c = read();
+                if(c == -1) return null;
+                recordLine = line;
+                List<String> fields = new ArrayList<>();
+                StringBuilder field = new StringBuilder();
+                boolean quoted = false;
+                while(true) {
+                    if(quoted) {
+                        if(c == -1) throw new IOException("Line " + recordLine + ": unterminated quoted field");
+                        if(c == '"') {
+                            c = read();
+                            if(c != '"') {
+                                quoted = false;
+                                continue;
+                            }
+                        }
+                        field.append((char) c);
+                    } else if(c == '"' && field.length() == 0) {
+                        quoted = true;
+                    } else if(c == ',') {
+                        fields.add(field.toString());
+                        field.setLength(0);
+                    } else if(c == '\r' || c == '\n' || c == -1) {
+                        if(c == '\r') {
+                            int n = read();
+                            if(n != '\n') peeked = n;
+                        }
+                        fields.add(field.toString());
+                        return fields;
+                    } else {
+                        field.append((char) c);
+                    }
+                    c = read();
+                }
+            }
+        }
+
+        // Returns the number of records committed; throws CancellationException once cancelled returns true
+        int importFile(File file, Regrader.Progress progress, java.util.function.BooleanSupplier cancelled) throws Exception {
+            List<Object[]> batch = new ArrayList<>();
+            List<CompletableFuture<String>> hashes = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            long size = Math.max(1, file.length());
+            try (FileInputStream fis = new FileInputStream(file)) {
+                CsvReader csv = new CsvReader(new BufferedReader(new InputStreamReader(fis, StandardCharsets.UTF_8), 1 << 16));
+                List<String> header = csv.next();
+                if(header == null) throw new IOException("The file is empty");
+                int[] at = new int[kind.columns.length];
+                for(int i = 0; i < at.length; i++) {
+                    at[i] = -1;
+                    for(int j = 0; j < header.size(); j++)
+                        if(header.get(j).trim().equalsIgnoreCase(kind.columns[i])) at[i] = j;
+                }
+                // Optional columns: role for users, id and options for questions
+                for(int i = 0; i < at.length; i++) {
+                    String column = kind.columns[i];
+                    boolean optional = column.equals("role") || column.equals("id") || column.equals("options");
+                    if(at[i] < 0 && !optional) throw new IOException("Missing column \"" + column + "\"; expected " + String.join(",", kind.columns));
+                }
+                List<String> fields;
+                while((fields = csv.next()) != null) {
+                    if(cancelled.getAsBoolean()) throw new CancellationException();
+                    rows++;
+                    String[] v = new String[at.length];
+                    for(int i = 0; i < at.length; i++) v[i] = at[i] >= 0 && at[i] < fields.size() ? fields.get(at[i]).trim() : "";
+                    try {
+                        switch(kind) {
+                            case USERS: user(v, seen, batch, hashes); break;
+                            case ENROLLMENTS: enrollment(v, seen, batch); break;
+                            default: batch.add(new Object[]{Journal.QUESTION, question(v)});
+                        }
+                    } catch (IllegalArgumentException e) {
+                        rejected++;
+                        if(errors.size() < MAX_ERRORS) errors.add("Line " + csv.recordLine + ": " + e.getMessage());
+                    }
+                    if(rows % 1000 == 0) progress.update((int) (100 * fis.getChannel().position() / size), 100);
+                }
+            }
+            // Users were queued with their plain passwords and are built once the hashes are in
+            for(int i = 0; i < hashes.size(); i++) {
+                if(cancelled.getAsBoolean()) throw new CancellationException();
+                Object[] record = batch.get(i);
+                String[] u = (String[]) record[1];
+                String hash = hashes.get(i).get();
+                record[1] = u[3].equals("teacher") ? new Teacher(u[0], u[1], hash) : new Student(u[0], u[1], hash);
+            }
+            progress.update(100, 100);
+            applied = dm.commitBatch(batch).get();
+            return applied;
+        }
+
+        void user(String[] v, Set<String> seen, List<Object[]> batch, List<CompletableFuture<String>> hashes) {
+            String username = v[0], name = v[1], password = v[2], role = v[3].isEmpty() ? "student" : v[3].toLowerCase(Locale.ROOT);
+            if(username.isEmpty() || name.isEmpty() || password.isEmpty()) throw new IllegalArgumentException("username, name and password are required");
+            if(!role.equals("student") && !role.equals("teacher")) throw new IllegalArgumentException("role must be student or teacher");
+            if(dm.usernameExists(username)) throw new IllegalArgumentException("username " + username + " is already taken");
+            if(!seen.add(DataManager.key(username))) throw new IllegalArgumentException("username " + username + " appears twice");
+            // An existing PBKDF2 hash is kept as it is
+            hashes.add(password.startsWith(Utils.PBKDF2_PREFIX) ? CompletableFuture.completedFuture(password)
+                    : CompletableFuture.supplyAsync(() -> Utils.hashPassword(password, HASH_ITERATIONS), Utils.HASH_POOL));
+            batch.add(new Object[]{Journal.USER, new String[]{username, name, null, role}});
+        }
+
+        void enrollment(String[] v, Set<String> seen, List<Object[]> batch) {
+            Course c = dm.getCourseByCode(v[0]);
+            if(c == null) throw new IllegalArgumentException("no course " + v[0]);
+            User u = dm.getUserByUsername(v[1]);
+            if(u == null || u.getRole() != User.Role.STUDENT) throw new IllegalArgumentException("no student " + v[1]);
+            if(c.isStudentEnrolled(u.getUsername())) throw new IllegalArgumentException(v[1] + " is already enrolled in " + c.courseCode);
+            if(!seen.add(DataManager.key(c.courseCode) + '\0' + DataManager.key(u.getUsername())))
+                throw new IllegalArgumentException("enrollment appears twice");
+            batch.add(new Object[]{Journal.ENROLL, new String[]{c.courseCode, u.getUsername()}});
+        }
+
+        // Options and short answer keywords are separated by "|"; an MCQ answer is the 0-based option index
+        static Question question(String[] v) {
+            Course c = dm.getCourseByCode(v[0]);
+            if(c == null) throw new IllegalArgumentException("no course " + v[0]);
+            String id = v[2].isEmpty() ? UUID.randomUUID().toString().substring(0,6) : v[2], text = v[3];
+            if(text.isEmpty()) throw new IllegalArgumentException("text is required");
+            int marks;
+            try {
+                marks = Integer.parseInt(v[4]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("marks must be a whole number");
+            }
+            if(marks <= 0) throw new IllegalArgumentException("marks must be positive");
+            Question q;
+            switch(v[1].toLowerCase(Locale.ROOT).replaceAll("[^a-z]", "")) {
+                case "mcq":
+                    List<String> options = split(v[5]);
+                    if(options.size() < 2) throw new IllegalArgumentException("an MCQ needs at least two options");
+                    // Answer sheets keep a choice in one byte
+                    if(options.size() > Byte.MAX_VALUE + 1) throw new IllegalArgumentException("an MCQ has at most " + (Byte.MAX_VALUE + 1) + " options");
+                    int answer;
+                    try {
+                        answer = Integer.parseInt(v[6]);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("an MCQ answer is the option index");
+                    }
+                    if(answer < 0 || answer >= options.size()) throw new IllegalArgumentException("answer index out of range");
+                    q = new MCQQuestion(id, text, marks, options, answer);
+                    break;
+                case "truefalse":
+                case "tf":
+                    if(!v[6].equalsIgnoreCase("true") && !v[6].equalsIgnoreCase("false"))
+                        throw new IllegalArgumentException("a True/False answer is true or false");
+                    q = new TrueFalseQuestion(id, text, marks, v[6].equalsIgnoreCase("true"));
+                    break;
+                case "short":
+                case "shortanswer":
+                    List<String> keywords = split(v[6]);
+                    if(keywords.isEmpty()) throw new IllegalArgumentException("a short answer needs keywords");
+                    q = new ShortAnswerQuestion(id, text, marks, keywords);
+                    break;
+                default:
+                    throw new IllegalArgumentException("type must be mcq, truefalse or short");
+            }
+            q.courseCode = c.courseCode;
+            return q;
+        }
+
+        static List<String> split(String s) {
+            List<String> parts = new ArrayList<>();
+            for(String p : s.split("\\|")) if(!p.trim().isEmpty()) parts.add(p.trim());
+            return parts;
+        }
+    }
+
+    // Compact binary encoding of the model: varints and a per-stream string dictionary
+    static class Codec {
+        static final int MAGIC = 0x45584D53; // "EXMS"
+        // 1: sequential sections; 2: sections addressed through an offset table in the trailer;
+        // 3: results hold a positional answer sheet instead of answers keyed by question ID;
+        // 4: questions carry a course and version, and quizzes reference them instead of embedding copies;
+        // 5: quizzes carry the seed of their per-student papers;
+        // 6: True/False slots of an answer sheet hold the option index, 0 for True, instead of 1 for true;
+        // 7: a snapshot may carry a section of journal frames, waiting on sections it copied through undecoded
+        static final int VERSION = 7;
+        static final byte TEACHER = 0, STUDENT = 1;
+        static final byte MCQ = 0, TRUE_FALSE = 1, SHORT_ANSWER = 2;
+
+        // Files written by the old ObjectOutputStream store start with the serialization stream magic
+        static boolean isLegacy(File f) throws IOException {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(f))) {
+                return in.readUnsignedShort() == 0xACED;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        static Reader reader(ByteBuffer buf) {
+            return new Reader(new DataInputStream(new ByteBufferInputStream(buf)));
+        }
+
+        static class ByteBufferInputStream extends InputStream {
+            final ByteBuffer buf;
+
+            ByteBufferInputStream(ByteBuffer buf) { this.buf = buf; }
+
+            @Override
+            public int read() {
+                return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if(!buf.hasRemaining()) return -1;
+                len = Math.min(len, buf.remaining());
+                buf.get(b, off, len);
+                return len;
+            }
+        }
+
+        // Tracks the absolute file position so section offsets can be recorded while streaming
+        static class CountingOutputStream extends FilterOutputStream {
+            long count;
+
+            CountingOutputStream(OutputStream out) { super(out); }
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                count++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                count += len;
+            }
+        }
+
+        static class Writer {
+            final DataOutputStream out;
+            final Map<String, Integer> dict = new HashMap<>();
+
+            Writer(DataOutputStream out) { this.out = out; }
+
+            void header() throws IOException {
+                out.writeInt(MAGIC);
+                varint(VERSION);
+            }
+
+            void varint(int v) throws IOException {
+                while((v & ~0x7F) != 0) {
+                    out.writeByte((v & 0x7F) | 0x80);
+                    v >>>= 7;
+                }
+                out.writeByte(v);
+            }
+
+            void varlong(long v) throws IOException {
+                while((v & ~0x7FL) != 0) {
+                    out.writeByte((int) (v & 0x7F) | 0x80);
+                    v >>>= 7;
+                }
+                out.writeByte((int) v);
+            }
+
+            // 0 = null, 1 = new string follows, n >= 2 = dictionary entry n - 2
+            void string(String s) throws IOException {
+                if(s == null) { varint(0); return; }
+                Integer id = dict.get(s);
+                if(id != null) { varint(id + 2); return; }
+                dict.put(s, dict.size());
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                varint(1);
+                varint(bytes.length);
+                out.write(bytes);
+            }
+
+            void strings(Collection<String> list) throws IOException {
+                varint(list.size());
+                for(String s : list) string(s);
+            }
+
+            void user(User u) throws IOException {
+                out.writeByte(u.getRole() == User.Role.TEACHER ? TEACHER : STUDENT);
+                string(u.username);
+                string(u.name);
+                string(u.passwordHash);
+            }
+
+            void course(Course c) throws IOException {
+                string(c.courseCode);
+                string(c.courseName);
+                strings(c.enrolledStudents);
+            }
+
+            void question(Question q) throws IOException {
+                if(q instanceof MCQQuestion) out.writeByte(MCQ);
+                else if(q instanceof TrueFalseQuestion) out.writeByte(TRUE_FALSE);
+                else out.writeByte(SHORT_ANSWER);
+                string(q.id);
+                string(q.questionText);
+                varint(q.marks);
+                string(q.courseCode);
+                varint(q.version);
+                if(q instanceof MCQQuestion) {
+                    MCQQuestion m = (MCQQuestion) q;
+                    strings(m.options);
+                    varint(m.correctIndex);
+                } else if(q instanceof TrueFalseQuestion) {
+                    out.writeBoolean(((TrueFalseQuestion) q).correctAnswer);
+                } else {
+                    strings(((ShortAnswerQuestion) q).keywords);
+                }
+            }
+
+            void quiz(Quiz q) throws IOException {
+                string(q.id);
+                string(q.courseCode);
+                varlong(q.startTime.getTime());
+                varint(q.durationMinutes);
+                // A quiz decoded but not yet resolved against the store still holds its references
+                if(q.questions == null) {
+                    varint(q.questionIds.length);
+                    for(int i = 0; i < q.questionIds.length; i++) {
+                        string(q.questionIds[i]);
+                        varint(q.questionVersions[i]);
+                    }
+                } else {
+                    varint(q.questions.size());
+                    for(Question question : q.questions) {
+                        string(question.id);
+                        varint(question.version);
+                    }
+                }
+                varlong(q.shuffleSeed);
+            }
+
+            void result(Result r) throws IOException {
+                string(r.quizId);
+                string(r.studentUsername);
+                varint(r.marksObtained);
+                varint(r.sheet.choices.length);
+                out.write(r.sheet.choices);
+                varint(r.sheet.texts.length);
+                for(String text : r.sheet.texts) string(text);
+            }
+
+            void record(byte type, Object payload) throws IOException {
+                switch(type) {
+                    case Journal.USER: user((User) payload); break;
+                    case Journal.COURSE: course((Course) payload); break;
+                    case Journal.QUESTION: question((Question) payload); break;
+                    case Journal.QUIZ: quiz((Quiz) payload); break;
+                    case Journal.RESULT: result((Result) payload); break;
+                    case Journal.ENROLL:
+                    case Journal.PASSWORD:
+                        String[] e = (String[]) payload;
+                        string(e[0]);
+                        string(e[1]);
+                        break;
+                    case Journal.REGRADE:
+                        RegradeBatch b = (RegradeBatch) payload;
+                        string(b.quizId);
+                        varint(b.marks.length);
+                        for(int i = 0; i < b.marks.length; i++) {
+                            string(b.usernames[i]);
+                            varint(b.marks[i]);
+                        }
+                        break;
+                    case Journal.REBIND:
+                        Rebind rebind = (Rebind) payload;
+                        string(rebind.quizId);
+                        varint(rebind.versions.length);
+                        for(int v : rebind.versions) varint(v);
+                        break;
+                    default: throw new IllegalArgumentException("Unknown record type " + type);
+                }
+            }
+        }
+
+        static class Reader {
+            final DataInputStream in;
+            final List<String> dict = new ArrayList<>();
+            int version = VERSION;
+
+            Reader(DataInputStream in) { this.in = in; }
+
+            void header() throws IOException {
+                if(in.readInt() != MAGIC) throw new IOException("Not an exam data file");
+                version = varint();
+                if(version > VERSION) throw new IOException("Unsupported data file version " + version);
+            }
+
+            int varint() throws IOException {
+                int result = 0;
+                for(int shift = 0; shift < 35; shift += 7) {
+                    int b = in.readUnsignedByte();
+                    result |= (b & 0x7F) << shift;
+                    if((b & 0x80) == 0) return result;
+                }
+                throw new IOException("Malformed varint");
+            }
+
+            long varlong() throws IOException {
+                long result = 0;
+                for(int shift = 0; shift < 70; shift += 7) {
+                    int b = in.readUnsignedByte();
+                    result |= (long) (b & 0x7F) << shift;
+                    if((b & 0x80) == 0) return result;
+                }
+                throw new IOException("Malformed varlong");
+            }
+
+            String string() throws IOException {
+                int tag = varint();
+                if(tag == 0) return null;
+                if(tag >= 2) return dict.get(tag - 2);
+                byte[] bytes = new byte[varint()];
+                in.readFully(bytes);
+                String s = new String(bytes, StandardCharsets.UTF_8);
+                dict.add(s);
+                return s;
+            }
+
+            List<String> strings() throws IOException {
+                int n = varint();
+                List<String> list = new ArrayList<>(n);
+                for(int i = 0; i < n; i++) list.add(string());
+                return list;
+            }
+
+            User user() throws IOException {
+                byte kind = in.readByte();
+                String username = string(), name = string(), hash = string();
+                return kind == TEACHER ? new Teacher(username, name, hash) : new Student(username, name, hash);
+            }
+
+            Course course() throws IOException {
+                Course c = new Course(string(), string());
+                c.enrolledStudents.addAll(strings());
+                return c;
+            }
+
+            Question question() throws IOException {
+                byte kind = in.readByte();
+                String id = string(), text = string();
+                int marks = varint();
+                String courseCode = version >= 4 ? string() : null;
+                int questionVersion = version >= 4 ? varint() : 1;
+                Question q;
+                switch(kind) {
+                    case MCQ: q = new MCQQuestion(id, text, marks, strings(), varint()); break;
+                    case TRUE_FALSE: q = new TrueFalseQuestion(id, text, marks, in.readBoolean()); break;
+                    case SHORT_ANSWER: q = new ShortAnswerQuestion(id, text, marks, strings()); break;
+                    default: throw new IOException("Unknown question kind " + kind);
+                }
+                q.courseCode = courseCode;
+                q.version = questionVersion;
+                return q;
+            }
+
+            Quiz quiz() throws IOException {
+                String id = string(), courseCode = string();
+                Date start = new Date(varlong());
+                int duration = varint();
+                int n = varint();
+                if(version < 4) {
+                    List<Question> questions = new ArrayList<>(n);
+                    for(int i = 0; i < n; i++) questions.add(question());
+                    return new Quiz(id, courseCode, start, duration, questions);
+                }
+                Quiz quiz = new Quiz(id, courseCode, start, duration, null);
+                quiz.questionIds = new String[n];
+                quiz.questionVersions = new int[n];
+                for(int i = 0; i < n; i++) {
+                    quiz.questionIds[i] = string();
+                    quiz.questionVersions[i] = varint();
+                }
+                if(version >= 5) quiz.shuffleSeed = varlong();
+                return quiz;
+            }
+
+            Result result() throws IOException {
+                Result r = new Result(string(), string());
+                r.marksObtained = varint();
+                if(version < 3) {
+                    int n = varint();
+                    r.legacyAnswers = new HashMap<>();
+                    for(int i = 0; i < n; i++) r.legacyAnswers.put(string(), string());
+                    return r;
+                }
+                byte[] choices = new byte[varint()];
+                in.readFully(choices);
+                String[] texts = new String[varint()];
+                for(int i = 0; i < texts.length; i++) texts[i] = string();
+                r.sheet = new AnswerSheet(choices, texts.length == 0 ? AnswerSheet.EMPTY.texts : texts);
+                r.trueFalseAsBoolean = version < 6;
+                return r;
+            }
+
+            Object record(byte type) throws IOException {
+                switch(type) {
+                    case Journal.USER: return user();
+                    case Journal.COURSE: return course();
+                    case Journal.QUESTION: return question();
+                    case Journal.QUIZ: return quiz();
+                    case Journal.RESULT: return result();
+                    case Journal.ENROLL:
+                    case Journal.PASSWORD: return new String[]{string(), string()};
+                    case Journal.REGRADE:
+                        String quizId = string();
+                        int n = varint();
+                        String[] usernames = new String[n];
+                        int[] marks = new int[n];
+                        for(int i = 0; i < n; i++) {
+                            usernames[i] = string();
+                            marks[i] = varint();
+                        }
+                        return new RegradeBatch(quizId, usernames, marks);
+                    case Journal.REBIND:
+                        String reboundId = string();
+                        int[] versions = new int[varint()];
+                        for(int i = 0; i < versions.length; i++) versions[i] = varint();
+                        return new Rebind(reboundId, versions);
+                    default: throw new IOException("Unknown record type " + type);
+                }
+            }
+        }
+    }
+
+    // Append-only log of individual mutations, replayed on load and folded into the snapshot by save()
+    static class Journal {
+        static final byte USER = 1, COURSE = 2, QUESTION = 3, QUIZ = 4, RESULT = 5, ENROLL = 6, REGRADE = 7, PASSWORD = 8;
+        // Codec version of the records after it; journals that start without one hold version 2 records
+        static final byte FORMAT = 0;
+        // Whole frames of other records under one checksum, so an import replays completely or not at all
+        static final byte BATCH = 9;
+        static final byte REBIND = 10;
+        // By record type, for metrics
+        static final String[] NAMES = {"format", "user", "course", "question", "quiz", "result", "enroll", "regrade", "password", "batch", "rebind"};
+
+        // Snapshot section a record type needs before it can be applied
+        static byte section(byte type) {
+            switch(type) {
+                case ENROLL: return COURSE;
+                case REGRADE: return RESULT;
+                case PASSWORD: return USER;
+                case REBIND: return QUIZ;
+                default: return type;
+            }
+        }
+
+        interface Handler { void apply(byte type, Object payload) throws Exception; }
+
+        final File file;
+        FileOutputStream fos;
+        DataOutputStream out;
+        int records;
+        int version;    // of the last record in the file, 0 until replayed or written
+
+        Journal(String fileName) {
+            this.file = new File(fileName);
+        }
+
+        // Record layout: type, payload length, CRC32 of payload, Codec-encoded payload
+        static byte[] encode(byte type, Object payload) throws IOException {
+            return frame(type, payload(type, payload));
+        }
+
+        static byte[] payload(byte type, Object payload) throws IOException {
+            ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(payloadBytes);
+            if(type == FORMAT) new Codec.Writer(dos).varint((Integer) payload);
+            else new Codec.Writer(dos).record(type, payload);
+            dos.flush();
+            return payloadBytes.toByteArray();
+        }
+
+        static byte[] batch(List<byte[]> frames) throws IOException {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            for(byte[] frame : frames) payload.write(frame);
+            return frame(BATCH, payload.toByteArray());
+        }
+
+        static byte[] frame(byte type, byte[] bytes) throws IOException {
+            java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+            crc.update(bytes);
+            ByteArrayOutputStream frame = new ByteArrayOutputStream(bytes.length + 9);
+            DataOutputStream fos = new DataOutputStream(frame);
+            fos.writeByte(type);
+            fos.writeInt(bytes.length);
+            fos.writeInt((int) crc.getValue());
+            fos.write(bytes);
+            return frame.toByteArray();
+        }
+
+        synchronized void write(List<byte[]> frames, int count) throws IOException {
+            if(out == null) {
+                fos = new FileOutputStream(file, true);
+                out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16));
+            }
+            if(version != Codec.VERSION) {
+                out.write(encode(FORMAT, Codec.VERSION));
+                version = Codec.VERSION;
+            }
+            for(byte[] frame : frames) out.write(frame);
+            out.flush();
+            records += count;
+        }
+
+        synchronized void sync() throws IOException {
+            if(out == null) return;
+            out.flush();
+            fos.getChannel().force(false);
+        }
+
+        // Applies every intact record; a torn tail left by a crash is cut off so later appends stay readable
+        synchronized void replay(Handler handler) throws IOException {
+            close();
+            records = 0;
+            version = 0;
+            if(!file.exists()) return;
+            int format = 2;
+            long good = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                while(true) {
+                    byte type;
+                    try { type = in.readByte(); } catch(EOFException e) { break; }
+                    byte[] bytes;
+                    int checksum;
+                    try {
+                        int len = in.readInt();
+                        checksum = in.readInt();
+                        if(len < 0 || len > file.length()) break;
+                        bytes = new byte[len];
+                        in.readFully(bytes);
+                    } catch(EOFException e) { break; }
+                    java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+                    crc.update(bytes);
+                    if((int) crc.getValue() != checksum) break;
+                    good += 9 + bytes.length;
+                    if(type == FORMAT) {
+                        format = Codec.reader(ByteBuffer.wrap(bytes)).varint();
+                        continue;
+                    }
+                    if(type != BATCH) {
+                        apply(handler, type, bytes, format);
+                        continue;
+                    }
+                    // Inner frames are covered by the outer checksum
+                    ByteBuffer inner = ByteBuffer.wrap(bytes);
+                    while(inner.remaining() >= 9) {
+                        byte innerType = inner.get();
+                        byte[] innerBytes = new byte[inner.getInt()];
+                        inner.getInt();
+                        inner.get(innerBytes);
+                        apply(handler, innerType, innerBytes, format);
+                    }
+                }
+            }
+            if(good > 0) version = format;
+            if(good < file.length()) {
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(good);
+                }
+            }
+        }
+
+        void apply(Handler handler, byte type, byte[] bytes, int format) {
+            try {
+                handler.apply(type, decode(type, bytes, format));
+            } catch(Exception e) {
+                e.printStackTrace();
+            }
+            records++;
+        }
+
+        // Journals written before the codec existed hold Java-serialized payloads
+        static Object decode(byte type, byte[] bytes, int version) throws Exception {
+            if(bytes.length >= 2 && (bytes[0] & 0xFF) == 0xAC && (bytes[1] & 0xFF) == 0xED) {
+                try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return ois.readObject();
+                }
+            }
+            Codec.Reader r = Codec.reader(ByteBuffer.wrap(bytes));
+            r.version = version;
+            return r.record(type);
+        }
+
+        // Frames laid end to end without a FORMAT record, as in a snapshot's section of held records
+        static void replay(ByteBuffer buf, int version, Handler handler) {
+            while(buf.remaining() >= 9) {
+                byte type = buf.get();
+                byte[] bytes = new byte[buf.getInt()];
+                buf.getInt();
+                buf.get(bytes);
+                try {
+                    handler.apply(type, decode(type, bytes, version));
+                } catch(Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        synchronized void reset() throws IOException {
+            close();
+            new FileOutputStream(file).close();
+            records = 0;
+            version = 0;
+        }
+
+        synchronized void close() throws IOException {
+            if(out != null) out.close();
+            out = null;
+            fos = null;
+        }
+    }
+
+    // Background writer: journal appends that arrive within a short window share one write and one fsync
+    static class PersistenceWriter implements Runnable {
+        // BATCH forces every batch to disk before completing it; INTERVAL completes after the write and forces periodically
+        enum Durability { BATCH, INTERVAL }
+
+        static class Op {
+            final byte[] frame;          // encoded journal record, null for snapshot and flush requests
+            final boolean snapshot;
+            final int records;           // more than one for a BATCH frame
+            final CompletableFuture<Void> done = new CompletableFuture<>();
+
+            Op(byte[] frame, boolean snapshot) {
+                this(frame, snapshot, frame == null ? 0 : 1);
+            }
+
+            Op(byte[] frame, boolean snapshot, int records) {
+                this.frame = frame;
+                this.snapshot = snapshot;
+                this.records = records;
+            }
+        }
+
+        static final Metrics.Histogram WRITE = Metrics.histogram("Persistence.write");
+        static final Metrics.Histogram COMPACT = Metrics.histogram("Persistence.compact");
+        static final java.util.concurrent.atomic.LongAdder BYTES = Metrics.counter("Persistence.bytesWritten");
+        // Every I/O error on the way to disk; each is still logged where it is caught
+        static final java.util.concurrent.atomic.LongAdder FAILURES = Metrics.counter("Persistence.failures");
+
+        final DataManager dm;
+        final BlockingQueue<Op> queue = new LinkedBlockingQueue<>();
+        final Durability durability = Durability.valueOf(System.getProperty("exam.durability", "BATCH").toUpperCase(Locale.ROOT));
+        final long batchWindowMillis = Long.getLong("exam.batchWindowMs", 5);
+        final long syncIntervalMillis = Long.getLong("exam.syncIntervalMs", 1000);
+        Thread thread;
+        volatile boolean stopping;
+
+        PersistenceWriter(DataManager dm) { this.dm = dm; }
+
+        synchronized CompletableFuture<Void> submit(Op op) {
+            if(thread == null) {
+                thread = new Thread(this, "exam-persistence");
+                thread.setDaemon(true);
+                thread.start();
+                Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
+            }
+            queue.add(op);
+            return op.done;
+        }
+
+        // Completes once everything submitted so far is on disk
+        CompletableFuture<Void> flush() {
+            return submit(new Op(null, false));
+        }
+
+        void shutdown() {
+            stopping = true;
+            try {
+                thread.join(10_000);
+            } catch (InterruptedException ignored) { }
+        }
+
+        @Override
+        public void run() {
+            long lastSync = System.currentTimeMillis();
+            boolean unsynced = false;
+            while(true) {
+                Op first;
+                try {
+                    first = queue.poll(unsynced ? syncIntervalMillis : 200, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                if(first == null) {
+                    if(unsynced) {
+                        sync();
+                        unsynced = false;
+                        lastSync = System.currentTimeMillis();
+                    }
+                    if(stopping) return;
+                    continue;
+                }
+                List<Op> batch = collect(first);
+                unsynced |= process(batch);
+                if(unsynced && System.currentTimeMillis() - lastSync >= syncIntervalMillis) {
+                    sync();
+                    unsynced = false;
+                    lastSync = System.currentTimeMillis();
+                }
+            }
+        }
+
+        // Gathers records until the window closes; a snapshot or flush request ends the batch
+        List<Op> collect(Op first) {
+            List<Op> batch = new ArrayList<>();
+            batch.add(first);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchWindowMillis);
+            while(first.frame != null) {
+                long wait = deadline - System.nanoTime();
+                if(wait <= 0) {
+                    queue.drainTo(batch);
+                    break;
+                }
+                Op next;
+                try {
+                    next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if(next == null) break;
+                batch.add(next);
+                if(next.frame == null) break;
+            }
+            return batch;
+        }
+
+        // Returns true when written data still awaits an interval fsync
+        boolean process(List<Op> batch) {
+            List<byte[]> frames = new ArrayList<>(batch.size());
+            boolean snapshot = false, flush = false;
+            int records = 0;
+            long bytes = 0;
+            for(Op op : batch) {
+                records += op.records;
+                if(op.frame != null) {
+                    frames.add(op.frame);
+                    bytes += op.frame.length;
+                } else if(op.snapshot) snapshot = true;
+                else flush = true;
+            }
+            long start = System.nanoTime();
+            try {
+                if(!frames.isEmpty()) dm.storage.write(frames, records);
+                if(durability == Durability.BATCH || flush) dm.storage.sync();
+                BYTES.add(bytes);
+                WRITE.recordSince(start);
+            } catch (IOException e) {
+                FAILURES.increment();
+                // The mutations are already applied in memory, so a snapshot still makes them durable
+                e.printStackTrace();
+                snapshot = true;
+            }
+            if(snapshot || dm.storage.backlog() >= DataManager.COMPACT_THRESHOLD) {
+                compact(batch);
+                return false;
+            }
+            for(Op op : batch) op.done.complete(null);
+            return durability == Durability.INTERVAL && !frames.isEmpty();
+        }
+
+        // Records still queued are already applied in memory, so the snapshot covers them and they are dropped
+        void compact(List<Op> batch) {
+            List<Op> covered = new ArrayList<>(batch);
+            long start = System.nanoTime();
+            boolean ok = dm.storage.compact(dm, covered);
+            COMPACT.recordSince(start);
+            if(!ok) FAILURES.increment();
+            for(Op op : covered) {
+                if(ok) op.done.complete(null);
+                else op.done.completeExceptionally(new IOException("Could not write " + dm.storage));
+            }
+        }
+
+        void sync() {
+            try {
+                dm.storage.sync();
+            } catch (IOException e) {
+                FAILURES.increment();
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Append-only list whose snapshot() views are immutable and read without locking.
+    // Writers serialize on the instance; readers see a prefix published through the volatile size.
+    static class AppendLog<T> implements Iterable<T> {
+        private volatile Object[] items = new Object[8];
+        private volatile int size;
+
+        synchronized void add(T item) {
+            Object[] a = items;
+            int n = size;
+            if(n == a.length) a = Arrays.copyOf(a, n * 2);
+            a[n] = item;
+            items = a;
+            size = n + 1;
+        }
+
+        int size() { return size; }
+
+        @SuppressWarnings("unchecked")
+        List<T> snapshot() {
+            int n = size;
+            return (List<T>) Collections.unmodifiableList(Arrays.asList(items).subList(0, n));
+        }
+
+        @Override
+        public Iterator<T> iterator() { return snapshot().iterator(); }
+    }
+
+    // Where DataManager keeps its data between runs. The Store in memory is the working set whichever backend is used:
+    // a backend fills a fresh Store on load, then persists the journal records the persistence thread hands it.
+    interface Storage {
+        // Applies everything stored through DataManager.apply; runs with the cut lock held exclusively
+        void load(DataManager dm, DataManager.Store s) throws IOException;
+        // Frames from Journal.encode or Journal.batch; `records` counts each record inside a batch
+        void write(List<byte[]> frames, int records) throws IOException;
+        void sync() throws IOException;
+        // Records written since the last compaction
+        int backlog();
+        // Rewrites the stored data from a DataManager.cut(), which also makes good a write() that failed
+        boolean compact(DataManager dm, Collection<PersistenceWriter.Op> covered);
+
+        // Records of one type that load() left where they are stored; DataManager.materialize() reads them on first use
+        interface Section {
+            // Whatever could be read; a failure part way is logged and the records before it are kept
+            List<Object> read();
+            // Bytes held outside the heap until then
+            default long bytes() { return 0; }
+        }
+
+        static Storage open(String spec) {
+            if(spec.equals("file")) return new FileStorage(FileStorage.FILE, FileStorage.JOURNAL);
+            if(spec.startsWith("jdbc:")) return new JdbcStorage(spec);
+            throw new IllegalArgumentException("Unknown storage " + spec + ", expected file or a JDBC URL");
+        }
+    }
+
+    // A snapshot file plus the journal of records since; the snapshot's sections are mapped and decoded on first use
+    static class FileStorage implements Storage {
+        static final String FILE = "examdata.bin", JOURNAL = "examdata.journal";
+
+        final String fileName;
+        final Journal journal;
+
+        FileStorage(String fileName, String journalName) {
+            this.fileName = fileName;
+            this.journal = new Journal(journalName);
+        }
+
+        @Override
+        public void load(DataManager dm, DataManager.Store s) throws IOException {
+            File f = new File(fileName);
+            MappedSection held = null;
+            if (f.exists()) {
+                try {
+                    if(Codec.isLegacy(f)) readLegacy(dm, s, f);
+                    else if(snapshotVersion(f) == 1) readSnapshot(dm, s, f);
+                    else held = mapSections(s, f);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            for(byte type : DataManager.EAGER_SECTIONS) dm.materialize(s, type);
+            if(held != null) Journal.replay(held.buf.duplicate(), held.version, (type, payload) -> dm.apply(s, type, payload));
+            journal.replay((type, payload) -> dm.apply(s, type, payload));
+        }
+
+        @Override
+        public void write(List<byte[]> frames, int records) throws IOException {
+            journal.write(frames, records);
+        }
+
+        @Override
+        public void sync() throws IOException {
+            journal.sync();
+        }
+
+        @Override
+        public int backlog() {
+            return journal.records;
+        }
+
+        // Writes the cut next to the live file, swaps it in, then empties the journal.
+        // Layout: header, one self-contained section per record type, offset table, then table offset and magic.
+        // A section nobody has read since it was mapped is copied through as it is, so compaction does not decode it;
+        // the journal records held back for such sections follow as one more section, of journal frames.
+        @Override
+        public boolean compact(DataManager dm, Collection<PersistenceWriter.Op> covered) {
+            DataManager.Cut cut = dm.cut(covered, FileStorage::copyable);
+            File tmp = new File(fileName + ".tmp");
+            try (Codec.CountingOutputStream counter = new Codec.CountingOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+                 DataOutputStream out = new DataOutputStream(counter)) {
+                new Codec.Writer(out).header();
+                List<long[]> table = new ArrayList<>();
+                for(byte type : DataManager.SECTIONS) {
+                    Section unloaded = cut.unloaded.get(type);
+                    table.add(unloaded != null ? copySection(out, counter, type, ((MappedSection) unloaded).buf)
+                            : writeSection(out, counter, type, cut.sections.get(type)));
+                }
+                if(!cut.held.isEmpty()) {
+                    long start = counter.count;
+                    for(Object[] record : cut.held) out.write(Journal.encode((Byte) record[0], record[1]));
+                    table.add(new long[]{Journal.BATCH, start, counter.count - start});
+                }
+                long tableOffset = counter.count;
+                new Codec.Writer(out).varint(table.size());
+                for(long[] entry : table) {
+                    out.writeByte((int) entry[0]);
+                    out.writeLong(entry[1]);
+                    out.writeLong(entry[2]);
+                }
+                out.writeLong(tableOffset);
+                out.writeInt(Codec.MAGIC);
+            } catch (Exception e) {
+                e.printStackTrace();
+                return false;
+            }
+            PersistenceWriter.BYTES.add(tmp.length());
+            try {
+                java.nio.file.Files.move(tmp.toPath(), new File(fileName).toPath(),
+                        java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+                journal.reset();
+                return true;
+            } catch (Exception e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+
+        long[] writeSection(DataOutputStream out, Codec.CountingOutputStream counter, byte type, List<?> items) throws IOException {
+            long start = counter.count;
+            Codec.Writer w = new Codec.Writer(out);
+            w.varint(items.size());
+            for(Object o : items) w.record(type, o);
+            return new long[]{type, start, counter.count - start};
+        }
+
+        long[] copySection(DataOutputStream out, Codec.CountingOutputStream counter, byte type, ByteBuffer buf) throws IOException {
+            long start = counter.count;
+            ByteBuffer src = buf.duplicate().rewind();
+            byte[] chunk = new byte[Math.min(1 << 16, src.remaining())];
+            while(src.hasRemaining()) {
+                int n = Math.min(chunk.length, src.remaining());
+                src.get(chunk, 0, n);
+                out.write(chunk, 0, n);
+            }
+            return new long[]{type, start, counter.count - start};
+        }
+
+        // Only a section already in the current format can be copied into a snapshot of it
+        static boolean copyable(Section section) {
+            return section instanceof MappedSection && ((MappedSection) section).version == Codec.VERSION;
+        }
+
+        static int snapshotVersion(File f) throws IOException {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(f))) {
+                Codec.Reader r = new Codec.Reader(in);
+                r.header();
+                return r.version;
+            }
+        }
+
+        // Maps each section read-only; nothing is decoded until materialize() asks for it.
+        // Returns the section of held journal records, if the snapshot has one, for load() to replay.
+        MappedSection mapSections(DataManager.Store s, File f) throws IOException {
+            try (java.nio.channels.FileChannel ch = java.nio.channels.FileChannel.open(f.toPath(), java.nio.file.StandardOpenOption.READ)) {
+                long size = ch.size();
+                ByteBuffer trailer = ByteBuffer.allocate(12);
+                while(trailer.hasRemaining() && ch.read(trailer, size - 12 + trailer.position()) > 0);
+                trailer.flip();
+                long tableOffset = trailer.getLong();
+                if(trailer.getInt() != Codec.MAGIC || tableOffset < 0 || tableOffset > size - 12)
+                    throw new IOException("Corrupt section table in " + f);
+                Codec.Reader r = Codec.reader(ch.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, tableOffset, size - 12 - tableOffset));
+                int version = snapshotVersion(f);
+                int n = r.varint();
+                MappedSection held = null;
+                for(int i = 0; i < n; i++) {
+                    byte type = r.in.readByte();
+                    long offset = r.in.readLong(), length = r.in.readLong();
+                    MappedSection section = new MappedSection(type, ch.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, offset, length), version);
+                    if(type == Journal.BATCH) held = section;
+                    else s.unloaded.put(type, section);
+                }
+                return held;
+            }
+        }
+
+        static class MappedSection implements Section {
+            final byte type;
+            final ByteBuffer buf;
+            final int version;
+
+            MappedSection(byte type, ByteBuffer buf, int version) {
+                this.type = type;
+                this.buf = buf;
+                this.version = version;
+            }
+
+            @Override
+            public List<Object> read() {
+                List<Object> decoded = new ArrayList<>();
+                try {
+                    Codec.Reader r = Codec.reader(buf.duplicate());
+                    r.version = version;
+                    int n = r.varint();
+                    for(int i = 0; i < n; i++) decoded.add(r.record(type));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                return decoded;
+            }
+
+            @Override
+            public long bytes() {
+                return buf.capacity();
+            }
+        }
+
+        // Version 1 snapshots were one sequential stream and are read eagerly
+        void readSnapshot(DataManager dm, DataManager.Store s, File f) throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16))) {
+                Codec.Reader r = new Codec.Reader(in);
+                r.header();
+                for(byte type : new byte[]{Journal.USER, Journal.COURSE, Journal.QUESTION, Journal.QUIZ, Journal.RESULT}) {
+                    int n = r.varint();
+                    for(int i = 0; i < n; i++) dm.apply(s, type, r.record(type));
+                }
+            }
+        }
+
+        // Stores written before the codec existed; the next compaction rewrites them in the new format
+        @SuppressWarnings("unchecked")
+        void readLegacy(DataManager dm, DataManager.Store s, File f) throws Exception {
+            try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+                for(User u : (List<User>) ois.readObject()) dm.apply(s, Journal.USER, u);
+                for(Course c : (List<Course>) ois.readObject()) {
+                    c.enrolledStudents = DataManager.concurrentSet(c.enrolledStudents);
+                    dm.apply(s, Journal.COURSE, c);
+                }
+                for(Question q : (List<Question>) ois.readObject()) dm.apply(s, Journal.QUESTION, q);
+                for(Quiz q : (List<Quiz>) ois.readObject()) dm.apply(s, Journal.QUIZ, q);
+                for(Result r : (List<Result>) ois.readObject()) dm.apply(s, Journal.RESULT, r);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return fileName;
+        }
+    }
+
+    // Keeps the data in an embedded database instead, chosen with -Dexam.storage=jdbc:sqlite:examdata.db (or jdbc:h2:./examdata)
+    // and the driver jar on the class path. A row holds one entity's Codec record next to the columns reports look it up by,
+    // so a quiz's or a student's results can be read with SQL without loading the store. Journal records become inserts
+    // and updates, batched on cached prepared statements and committed once per persistence-thread write.
+    static class JdbcStorage implements Storage {
+        static final String[] SCHEMA = {
+                "CREATE TABLE IF NOT EXISTS users (seq BIGINT PRIMARY KEY, username VARCHAR(255) NOT NULL, password_hash VARCHAR(255), format INT NOT NULL, data BLOB NOT NULL)",
+                "CREATE INDEX IF NOT EXISTS users_username ON users (username)",
+                "CREATE TABLE IF NOT EXISTS courses (seq BIGINT PRIMARY KEY, code VARCHAR(255) NOT NULL, format INT NOT NULL, data BLOB NOT NULL)",
+                "CREATE INDEX IF NOT EXISTS courses_code ON courses (code)",
+                "CREATE TABLE IF NOT EXISTS enrollments (seq BIGINT PRIMARY KEY, course_code VARCHAR(255) NOT NULL, username VARCHAR(255) NOT NULL)",
+                "CREATE INDEX IF NOT EXISTS enrollments_course ON enrollments (course_code, username)",
+                "CREATE INDEX IF NOT EXISTS enrollments_username ON enrollments (username)",
+                "CREATE TABLE IF NOT EXISTS questions (seq BIGINT PRIMARY KEY, id VARCHAR(255) NOT NULL, version INT NOT NULL, course_code VARCHAR(255), format INT NOT NULL, data BLOB NOT NULL)",
+                "CREATE INDEX IF NOT EXISTS questions_course ON questions (course_code)",
+                "CREATE TABLE IF NOT EXISTS quizzes (seq BIGINT PRIMARY KEY, id VARCHAR(255) NOT NULL, course_code VARCHAR(255) NOT NULL, end_time BIGINT NOT NULL, format INT NOT NULL, data BLOB NOT NULL)",
+                "CREATE INDEX IF NOT EXISTS quizzes_course ON quizzes (course_code, end_time)",
+                "CREATE TABLE IF NOT EXISTS results (seq BIGINT PRIMARY KEY, quiz_id VARCHAR(255) NOT NULL, username VARCHAR(255) NOT NULL, marks INT NOT NULL, format INT NOT NULL, data BLOB NOT NULL)",
+                "CREATE INDEX IF NOT EXISTS results_quiz ON results (quiz_id, username)",
+                "CREATE INDEX IF NOT EXISTS results_username ON results (username)"
+        };
+        static final String[] TABLES = {"users", "courses", "enrollments", "questions", "quizzes", "results"};
+        static final String INSERT_USER = "INSERT INTO users (seq, username, password_hash, format, data) VALUES (?, ?, ?, ?, ?)";
+        static final String INSERT_COURSE = "INSERT INTO courses (seq, code, format, data) VALUES (?, ?, ?, ?)";
+        static final String INSERT_ENROLLMENT = "INSERT INTO enrollments (seq, course_code, username) VALUES (?, ?, ?)";
+        static final String INSERT_QUESTION = "INSERT INTO questions (seq, id, version, course_code, format, data) VALUES (?, ?, ?, ?, ?, ?)";
+        static final String INSERT_QUIZ = "INSERT INTO quizzes (seq, id, course_code, end_time, format, data) VALUES (?, ?, ?, ?, ?, ?)";
+        static final String INSERT_RESULT = "INSERT INTO results (seq, quiz_id, username, marks, format, data) VALUES (?, ?, ?, ?, ?, ?)";
+        static final String UPDATE_PASSWORD = "UPDATE users SET password_hash = ? WHERE username = ?";
+        static final String UPDATE_MARKS = "UPDATE results SET marks = ? WHERE quiz_id = ? AND username = ?";
+        static final String SELECT_QUIZ = "SELECT format, data FROM quizzes WHERE id = ?";
+        static final String SELECT_QUESTIONS = "SELECT seq, format, data FROM questions WHERE seq <= ? ORDER BY seq";
+        static final String SELECT_QUIZZES = "SELECT seq, format, data FROM quizzes WHERE seq <= ? ORDER BY seq";
+        static final String SELECT_RESULTS = "SELECT seq, format, data, marks FROM results WHERE seq <= ? ORDER BY seq";
+        static final String UPDATE_QUIZ = "UPDATE quizzes SET format = ?, data = ? WHERE id = ?";
+        // Rows queued before the pending batches are sent, so a compaction of a large store does not sit in driver memory
+        static final int BATCH_ROWS = 1000;
+
+        final String url;
+        java.sql.Connection connection;
+        final Map<String, java.sql.PreparedStatement> statements = new HashMap<>();
+        // Statements holding a batch not yet executed, in the order they were first used
+        final Set<java.sql.PreparedStatement> pending = new LinkedHashSet<>();
+        int queued;
+        long seq;   // highest row number in any table; rows are loaded back in this order
+
+        JdbcStorage(String url) {
+            this.url = url;
+        }
+
+        synchronized void connect() throws java.sql.SQLException {
+            if(connection != null) return;
+            connection = java.sql.DriverManager.getConnection(url);
+            connection.setAutoCommit(false);
+            try (java.sql.Statement st = connection.createStatement()) {
+                for(String ddl : SCHEMA) st.execute(ddl);
+            }
+            connection.commit();
+        }
+
+        interface Row { void read(java.sql.ResultSet rs) throws Exception; }
+
+        // Every query selects seq first, and format and data next when the table has them
+        void each(java.sql.Statement st, String sql, Row row) throws Exception {
+            try (java.sql.ResultSet rs = st.executeQuery(sql)) {
+                while(rs.next()) {
+                    seq = Math.max(seq, rs.getLong(1));
+                    row.read(rs);
+                }
+            }
+        }
+
+        static Object decode(byte type, java.sql.ResultSet rs) throws Exception {
+            Codec.Reader r = Codec.reader(ByteBuffer.wrap(rs.getBytes(3)));
+            r.version = rs.getInt(2);
+            return r.record(type);
+        }
+
+        // Users and courses are read now; questions, quizzes and results stay in the database as sections, as they stay
+        // in the mapped snapshot with FileStorage. A section reads only the rows that existed at load, since records
+        // written after it are held back for the section until it is read.
+        // An empty database is first filled from the file store, if there is one, so switching backends keeps the data.
+        @Override
+        public synchronized void load(DataManager dm, DataManager.Store s) throws IOException {
+            try {
+                connect();
+                seq = 0;
+                try (java.sql.Statement st = connection.createStatement()) {
+                    for(String table : TABLES) each(st, "SELECT MAX(seq) FROM " + table, rs -> { });
+                    if(seq == 0 && migrate(dm, s)) return;
+                    each(st, "SELECT seq, format, data, password_hash FROM users ORDER BY seq", rs -> {
+                        User u = (User) decode(Journal.USER, rs);
+                        u.passwordHash = rs.getString(4);
+                        dm.apply(s, Journal.USER, u);
+                    });
+                    each(st, "SELECT seq, format, data FROM courses ORDER BY seq", rs -> dm.apply(s, Journal.COURSE, decode(Journal.COURSE, rs)));
+                    each(st, "SELECT seq, course_code, username FROM enrollments ORDER BY seq",
+                            rs -> dm.apply(s, Journal.ENROLL, new String[]{rs.getString(2), rs.getString(3)}));
+                }
+                connection.commit();
+                long loaded = seq;
+                s.unloaded.put(Journal.QUESTION, () -> read(Journal.QUESTION, SELECT_QUESTIONS, loaded));
+                s.unloaded.put(Journal.QUIZ, () -> read(Journal.QUIZ, SELECT_QUIZZES, loaded));
+                s.unloaded.put(Journal.RESULT, () -> read(Journal.RESULT, SELECT_RESULTS, loaded));
+            } catch (IllegalStateException e) {
+                throw e;
+            } catch (Exception e) {
+                rollback();
+                throw new IOException("Could not load " + this, e);
+            }
+        }
+
+        // Rows of one section up to the given seq. Regrades only touch the marks column, which wins over the record.
+        synchronized List<Object> read(byte type, String sql, long upTo) {
+            List<Object> rows = new ArrayList<>();
+            try {
+                connect();
+                java.sql.PreparedStatement ps = statement(sql);
+                ps.setLong(1, upTo);
+                try (java.sql.ResultSet rs = ps.executeQuery()) {
+                    while(rs.next()) {
+                        Object o = decode(type, rs);
+                        if(type == Journal.RESULT) ((Result) o).marksObtained = rs.getInt(4);
+                        rows.add(o);
+                    }
+                }
+                connection.commit();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            return rows;
+        }
+
+        // Copies examdata.bin and examdata.journal into the empty tables. They are left where they are, and
+        // are not read again once the tables have rows. If the copy fails the application does not start, rather
+        // than start empty and have new rows stop a later attempt.
+        boolean migrate(DataManager dm, DataManager.Store s) {
+            if(!new File(FileStorage.FILE).exists() && !new File(FileStorage.JOURNAL).exists()) return false;
+            try {
+                new FileStorage(FileStorage.FILE, FileStorage.JOURNAL).load(dm, s);
+                dm.materializeAll(s);
+                int rows = insertAll(DataManager.sections(s));
+                connection.commit();
+                System.out.println("Copied " + rows + " records from " + FileStorage.FILE + " into " + this);
+                return true;
+            } catch (Exception e) {
+                rollback();
+                throw new IllegalStateException("Could not copy " + FileStorage.FILE + " into " + this, e);
+            }
+        }
+
+        @Override
+        public synchronized void write(List<byte[]> frames, int records) throws IOException {
+            try {
+                connect();
+                for(byte[] frame : frames) {
+                    ByteBuffer buf = ByteBuffer.wrap(frame);
+                    byte type = buf.get();
+                    byte[] payload = new byte[buf.getInt()];
+                    buf.getInt();
+                    buf.get(payload);
+                    if(type != Journal.BATCH) {
+                        add(type, payload);
+                        continue;
+                    }
+                    ByteBuffer inner = ByteBuffer.wrap(payload);
+                    while(inner.remaining() >= 9) {
+                        byte innerType = inner.get();
+                        byte[] innerPayload = new byte[inner.getInt()];
+                        inner.getInt();
+                        inner.get(innerPayload);
+                        add(innerType, innerPayload);
+                    }
+                }
+                executePending();
+                connection.commit();
+            } catch (Exception e) {
+                rollback();
+                throw new IOException("Could not write to " + this, e);
+            }
+        }
+
+        // Each commit is durable already
+        @Override
+        public void sync() { }
+
+        // Rows are written in place, so nothing accumulates for a compaction to fold
+        @Override
+        public int backlog() {
+            return 0;
+        }
+
+        // Replaces every table's rows with the cut in one transaction; only needed after a failed write or on request.
+        // The cut is taken outside this lock: it reads the remaining sections, holding the store's lock while they
+        // wait for this one.
+        @Override
+        public boolean compact(DataManager dm, Collection<PersistenceWriter.Op> covered) {
+            return replace(dm.cut(covered, section -> false).sections);
+        }
+
+        synchronized boolean replace(Map<Byte, List<?>> sections) {
+            try {
+                connect();
+                try (java.sql.Statement st = connection.createStatement()) {
+                    for(String table : TABLES) st.executeUpdate("DELETE FROM " + table);
+                }
+                seq = 0;
+                insertAll(sections);
+                connection.commit();
+                return true;
+            } catch (Exception e) {
+                e.printStackTrace();
+                rollback();
+                return false;
+            }
+        }
+
+        int insertAll(Map<Byte, List<?>> sections) throws Exception {
+            int rows = 0;
+            for(Map.Entry<Byte, List<?>> section : sections.entrySet()) {
+                byte type = section.getKey();
+                for(Object o : section.getValue()) {
+                    byte[] bytes = Journal.payload(type, o);
+                    insert(type, o, bytes);
+                    PersistenceWriter.BYTES.add(bytes.length);
+                    rows++;
+                }
+            }
+            executePending();
+            return rows;
+        }
+
+        void add(byte type, byte[] bytes) throws Exception {
+            Object payload = Journal.decode(type, bytes, Codec.VERSION);
+            switch(type) {
+                case Journal.ENROLL:
+                    String[] e = (String[]) payload;
+                    queue(INSERT_ENROLLMENT, null, e[0], e[1]);
+                    break;
+                case Journal.PASSWORD:
+                    String[] pw = (String[]) payload;
+                    update(UPDATE_PASSWORD, pw[1], pw[0]);
+                    break;
+                case Journal.REGRADE:
+                    RegradeBatch b = (RegradeBatch) payload;
+                    for(int i = 0; i < b.marks.length; i++) update(UPDATE_MARKS, b.marks[i], b.quizId, b.usernames[i]);
+                    break;
+                case Journal.REBIND:
+                    rebind((Rebind) payload);
+                    break;
+                default: insert(type, payload, bytes);
+            }
+        }
+
+        // One entity row; a course also gets a row for each student it was created with
+        void insert(byte type, Object payload, byte[] bytes) throws java.sql.SQLException {
+            switch(type) {
+                case Journal.USER:
+                    User u = (User) payload;
+                    queue(INSERT_USER, bytes, u.getUsername(), u.getPasswordHash());
+                    break;
+                case Journal.COURSE:
+                    Course c = (Course) payload;
+                    queue(INSERT_COURSE, bytes, c.courseCode);
+                    for(String username : c.enrolledStudents) queue(INSERT_ENROLLMENT, null, c.courseCode, username);
+                    break;
+                case Journal.QUESTION:
+                    Question q = (Question) payload;
+                    queue(INSERT_QUESTION, bytes, q.id, q.version, q.courseCode);
+                    break;
+                case Journal.QUIZ:
+                    Quiz quiz = (Quiz) payload;
+                    queue(INSERT_QUIZ, bytes, quiz.id, quiz.courseCode, quiz.getEndTime());
+                    break;
+                case Journal.RESULT:
+                    Result r = (Result) payload;
+                    queue(INSERT_RESULT, bytes, r.quizId, r.studentUsername, r.marksObtained);
+                    break;
+                default: throw new IllegalArgumentException("Unknown record type " + type);
+            }
+        }
+
+        // Rewrites the quiz's record with the question versions it was rebound to
+        void rebind(Rebind rebind) throws Exception {
+            executePending();
+            java.sql.PreparedStatement select = statement(SELECT_QUIZ);
+            select.setString(1, rebind.quizId);
+            Quiz quiz;
+            try (java.sql.ResultSet rs = select.executeQuery()) {
+                if(!rs.next()) return;
+                Codec.Reader r = Codec.reader(ByteBuffer.wrap(rs.getBytes(2)));
+                r.version = rs.getInt(1);
+                quiz = r.quiz();
+            }
+            if(quiz.questionIds == null) {
+                // Written before quizzes referenced their questions; the embedded copies are stored under the same IDs
+                quiz.questionIds = new String[quiz.questions.size()];
+                for(int i = 0; i < quiz.questionIds.length; i++) quiz.questionIds[i] = quiz.questions.get(i).id;
+                quiz.questionVersions = new int[quiz.questionIds.length];
+                Arrays.fill(quiz.questionVersions, 1);
+                quiz.questions = null;
+            }
+            for(int i = 0; i < quiz.questionIds.length && i < rebind.versions.length; i++) quiz.questionVersions[i] = rebind.versions[i];
+            update(UPDATE_QUIZ, Codec.VERSION, Journal.payload(Journal.QUIZ, quiz), rebind.quizId);
+        }
+
+        // Parameters are seq, the columns, then format and data unless the table has none
+        void queue(String sql, byte[] data, Object... columns) throws java.sql.SQLException {
+            java.sql.PreparedStatement ps = statement(sql);
+            int i = 1;
+            ps.setLong(i++, ++seq);
+            i = bind(ps, i, columns);
+            if(data != null) {
+                ps.setInt(i++, Codec.VERSION);
+                ps.setBytes(i, data);
+            }
+            batch(ps);
+        }
+
+        // An update can touch rows inserted earlier in the same write, so whatever else is queued runs first
+        void update(String sql, Object... columns) throws java.sql.SQLException {
+            java.sql.PreparedStatement ps = statement(sql);
+            if(!pending.isEmpty() && !(pending.size() == 1 && pending.contains(ps))) executePending();
+            bind(ps, 1, columns);
+            batch(ps);
+        }
+
+        static int bind(java.sql.PreparedStatement ps, int i, Object... columns) throws java.sql.SQLException {
+            for(Object column : columns) {
+                if(column == null) ps.setNull(i++, java.sql.Types.VARCHAR);
+                else ps.setObject(i++, column);
+            }
+            return i;
+        }
+
+        void batch(java.sql.PreparedStatement ps) throws java.sql.SQLException {
+            ps.addBatch();
+            pending.add(ps);
+            if(++queued >= BATCH_ROWS) executePending();
+        }
+
+        java.sql.PreparedStatement statement(String sql) throws java.sql.SQLException {
+            java.sql.PreparedStatement ps = statements.get(sql);
+            if(ps == null) statements.put(sql, ps = connection.prepareStatement(sql));
+            return ps;
+        }
+
+        void executePending() throws java.sql.SQLException {
+            for(java.sql.PreparedStatement ps : pending) ps.executeBatch();
+            pending.clear();
+            queued = 0;
+        }
+
+        void rollback() {
+            try {
+                for(java.sql.PreparedStatement ps : pending) ps.clearBatch();
+                if(connection != null) connection.rollback();
+            } catch (java.sql.SQLException e) {
+                e.printStackTrace();
+            }
+            pending.clear();
+            queued = 0;
+        }
+
+        // Without any properties, which may carry a password
+        @Override
+        public String toString() {
+            return url.split("[;?]")[0];
+        }
+    }
+
+    // Data manager handles serialization and data access.
+    // Reads are lock-free: every index is a concurrent map or an AppendLog inside the current Store.
+    // Writes to one course serialize on that course's stripe; snapshots briefly take the cut lock exclusively.
+    static class DataManager {
+        // All in-memory state; load() builds a fresh Store and publishes it with one volatile write
+        static class Store {
+            final AppendLog<User> users = new AppendLog<>();
+            final AppendLog<Course> courses = new AppendLog<>();
+            final AppendLog<Question> questions = new AppendLog<>();
+            final AppendLog<Quiz> quizzes = new AppendLog<>();
+            final AppendLog<Result> results = new AppendLog<>();
+
+            // Case-normalized indexes, kept in step with the lists by index()
+            final Map<String, User> userIndex = new ConcurrentHashMap<>();
+            final Map<String, Course> courseIndex = new ConcurrentHashMap<>();
+            final Map<String, Quiz> quizIndex = new ConcurrentHashMap<>();
+            final Map<String, Quiz> quizShortIdIndex = new ConcurrentHashMap<>();
+            final Map<String, Result> resultIndex = new ConcurrentHashMap<>();
+            // Every stored version by ID and version, the newest version by ID, and each course's bank ("" for unassigned)
+            final Map<String, Question> questionIndex = new ConcurrentHashMap<>();
+            final Map<String, Question> latestQuestionIndex = new ConcurrentHashMap<>();
+            final Map<String, AppendLog<Question>> questionsByCourseIndex = new ConcurrentHashMap<>();
+            final Map<String, AppendLog<Result>> resultsByQuizIndex = new ConcurrentHashMap<>();
+            final Map<String, QuizStats> quizStatsIndex = new ConcurrentHashMap<>();
+            // Reverse enrollment (exact username, as Course.isStudentEnrolled) and per-course quizzes by end time
+            final Map<String, AppendLog<Course>> coursesByStudentIndex = new ConcurrentHashMap<>();
+            final Map<String, ConcurrentSkipListMap<Long, AppendLog<Quiz>>> quizzesByCourseIndex = new ConcurrentHashMap<>();
+
+            // Snapshot sections not decoded yet, keyed by record type, and journal records waiting on them
+            final Map<Byte, Storage.Section> unloaded = new ConcurrentHashMap<>();
+            // Guarded by the Store's monitor
+            final Map<Byte, List<Object[]>> pending = new HashMap<>();
+        }
+
+        volatile Store store = new Store();
+
+        // Journal records accumulated before they are folded into a fresh snapshot
+        static final int COMPACT_THRESHOLD = 1000;
+        // "file" for examdata.bin and its journal, or the JDBC URL of an embedded database
+        final Storage storage = Storage.open(System.getProperty("exam.storage", "file"));
+        final PersistenceWriter writer = new PersistenceWriter(this);
+        // Users and courses are needed to log in and draw a dashboard; everything else is decoded on first use
+        static final byte[] EAGER_SECTIONS = {Journal.USER, Journal.COURSE};
+        // Snapshot sections, in the order they are written and applied
+        static final byte[] SECTIONS = {Journal.USER, Journal.COURSE, Journal.QUESTION, Journal.QUIZ, Journal.RESULT};
+
+        // Mutators hold the cut lock shared while they apply and queue a record; a snapshot cut or a reload holds it exclusively
+        final java.util.concurrent.locks.StampedLock cutLock = new java.util.concurrent.locks.StampedLock();
+        final Object[] stripes = new Object[64];
+        {
+            for(int i = 0; i < stripes.length; i++) stripes[i] = new Object();
+        }
+
+        static final Metrics.Histogram LOAD = Metrics.histogram("DataManager.load");
+        static final Metrics.Histogram MATERIALIZE = Metrics.histogram("DataManager.materialize");
+        // From asking for the cut lock to the record being queued, so waits on the lock and the stripe count
+        static final Metrics.Histogram MUTATE = Metrics.histogram("DataManager.mutate");
+        static final Metrics.Histogram AUTHENTICATE = Metrics.histogram("DataManager.authenticate");
+        static final Metrics.Histogram QUESTION_BANK = Metrics.histogram("DataManager.questionBank");
+        static final Metrics.Histogram QUIZZES_ENDING_AFTER = Metrics.histogram("DataManager.quizzesEndingAfter");
+        // Journal records queued, by type
+        static final java.util.concurrent.atomic.LongAdder[] RECORDS = new java.util.concurrent.atomic.LongAdder[Journal.NAMES.length];
+        static {
+            for(byte type = Journal.USER; type < RECORDS.length; type++) RECORDS[type] = Metrics.counter("Persistence." + Journal.NAMES[type] + "Records");
+        }
+
+        // Entry counts of the current Store; what each collection retains on the heap would take an object-graph walk,
+        // so the undecoded snapshot bytes and java.lang:type=Memory fill in the rest
+        {
+            Metrics.gauge("Store.users", () -> store.users.size());
+            Metrics.gauge("Store.courses", () -> store.courses.size());
+            Metrics.gauge("Store.questions", () -> store.questions.size());
+            Metrics.gauge("Store.quizzes", () -> store.quizzes.size());
+            Metrics.gauge("Store.results", () -> store.results.size());
+            Metrics.gauge("Store.unloadedBytes", () -> {
+                long bytes = 0;
+                for(Storage.Section section : store.unloaded.values()) bytes += section.bytes();
+                return bytes;
+            });
+            Metrics.gauge("Persistence.queued", () -> writer.queue.size());
+            Metrics.gauge("Persistence.backlog", () -> storage.backlog());
+        }
+
+        static String key(String s) {
+            return s.toLowerCase(Locale.ROOT);
+        }
+        static String resultKey(String quizId, String username) {
+            return key(quizId) + '\0' + key(username);
+        }
+        static String questionKey(String id, int version) {
+            return id + '\0' + version;
+        }
+        static String shortId(String quizId) {
+            return quizId.length() > 6 ? quizId.substring(0, 6) : quizId;
+        }
+
+        Object stripe(String key) {
+            return stripes[(key(key).hashCode() & 0x7fffffff) % stripes.length];
+        }
+
+        <T> T mutate(String stripeKey, java.util.function.Supplier<T> body) {
+            long start = System.nanoTime();
+            long stamp = cutLock.readLock();
+            try {
+                synchronized (stripe(stripeKey)) {
+                    return body.get();
+                }
+            } finally {
+                cutLock.unlockRead(stamp);
+                MUTATE.recordSince(start);
+            }
+        }
+
+        // Mutations and snapshots are written by the persistence thread; anything still queued lands before the reload
+        void load() {
+            long start = System.nanoTime();
+            writer.flush().join();
+            long stamp = cutLock.writeLock();
+            try {
+                store = reload();
+            } finally {
+                cutLock.unlockWrite(stamp);
+            }
+            LOAD.recordSince(start);
+            if(storage.backlog() >= COMPACT_THRESHOLD) save();
+        }
+
+        Store reload() {
+            Store s = new Store();
+            try {
+                storage.load(this, s);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return s;
+        }
+
+        void materialize(byte type) {
+            materialize(store, type);
+        }
+
+        // Reads a section the backend left unloaded into its list, then applies the journal records held back for it.
+        // Quizzes need their questions in place first to resolve references, and results need their quizzes
+        // so answers from older stores can be laid out by question.
+        // The section leaves unloaded only once all of it is applied, so a thread that finds it gone without taking
+        // the lock never reads half-filled indexes; one that finds it still there waits here for the decode to finish.
+        void materialize(Store s, byte type) {
+            if(!s.unloaded.containsKey(type)) return;
+            if(type == Journal.RESULT) materialize(s, Journal.QUIZ);
+            if(type == Journal.QUIZ) materialize(s, Journal.QUESTION);
+            synchronized (s) {
+                Storage.Section section = s.unloaded.get(type);
+                if(section == null) return;
+                long start = System.nanoTime();
+                for(Object o : section.read()) applyLoaded(s, type, o);
+                List<Object[]> held = s.pending.remove(type);
+                if(held != null) for(Object[] record : held) applyLoaded(s, (Byte) record[0], record[1]);
+                s.unloaded.remove(type);
+                MATERIALIZE.recordSince(start);
+            }
+        }
+
+        void materializeAll() {
+            materializeAll(store);
+        }
+
+        void materializeAll(Store s) {
+            for(byte type : new ArrayList<>(s.unloaded.keySet())) materialize(s, type);
+        }
+
+        static Set<String> concurrentSet(Collection<String> items) {
+            Set<String> set = ConcurrentHashMap.newKeySet();
+            set.addAll(items);
+            return set;
+        }
+
+        // First entry wins on duplicate keys, matching the linear scans these indexes replaced
+        void index(Store s, User u) {
+            s.userIndex.putIfAbsent(key(u.getUsername()), u);
+        }
+        void index(Store s, Course c) {
+            s.courseIndex.putIfAbsent(key(c.courseCode), c);
+            for(String username : c.enrolledStudents) indexEnrollment(s, c, username);
+        }
+        void indexEnrollment(Store s, Course c, String username) {
+            s.coursesByStudentIndex.computeIfAbsent(username, k -> new AppendLog<>()).add(c);
+        }
+        void index(Store s, Question q) {
+            s.questionIndex.put(questionKey(q.id, q.version), q);
+            s.latestQuestionIndex.merge(q.id, q, (a, b) -> b.version > a.version ? b : a);
+            s.questionsByCourseIndex.computeIfAbsent(q.courseCode == null ? "" : key(q.courseCode), k -> new AppendLog<>()).add(q);
+        }
+        void index(Store s, Quiz q) {
+            s.quizIndex.putIfAbsent(key(q.id), q);
+            s.quizShortIdIndex.putIfAbsent(shortId(q.id), q);
+            s.quizzesByCourseIndex.computeIfAbsent(key(q.courseCode), k -> new ConcurrentSkipListMap<>())
+                    .computeIfAbsent(q.getEndTime(), k -> new AppendLog<>()).add(q);
+        }
+        void index(Store s, Result r) {
+            s.resultIndex.putIfAbsent(resultKey(r.quizId, r.studentUsername), r);
+            s.resultsByQuizIndex.computeIfAbsent(key(r.quizId), k -> new AppendLog<>()).add(r);
+            s.quizStatsIndex.computeIfAbsent(key(r.quizId), k -> new QuizStats()).add(r, s.quizIndex.get(key(r.quizId)));
+        }
+
+        // A record for an unloaded section is held back under the lock materialize() decodes it with, checked again
+        // once taken: a record added after the decode took the held ones would otherwise never be applied.
+        void apply(Store s, byte type, Object payload) {
+            byte section = Journal.section(type);
+            if(s.unloaded.containsKey(section)) {
+                synchronized (s) {
+                    if(s.unloaded.containsKey(section)) {
+                        s.pending.computeIfAbsent(section, k -> new ArrayList<>()).add(new Object[]{type, payload});
+                        return;
+                    }
+                }
+            }
+            applyLoaded(s, type, payload);
+        }
+
+        // For a record whose section is decoded, or is being decoded by materialize() on this thread
+        void applyLoaded(Store s, byte type, Object payload) {
+            switch(type) {
+                case Journal.USER: s.users.add((User) payload); index(s, (User) payload); break;
+                case Journal.COURSE: s.courses.add((Course) payload); index(s, (Course) payload); break;
+                case Journal.QUESTION:
+                    Question question = (Question) payload;
+                    if(question.version == 0) question.version = 1;
+                    // Older stores repeat a question in every quiz that used it; the first copy is kept
+                    if(s.questionIndex.containsKey(questionKey(question.id, question.version))) break;
+                    s.questions.add(question);
+                    index(s, question);
+                    break;
+                case Journal.QUIZ:
+                    Quiz quiz = (Quiz) payload;
+                    resolveQuestions(s, quiz);
+                    s.quizzes.add(quiz);
+                    index(s, quiz);
+                    break;
+                case Journal.RESULT:
+                    Result r = (Result) payload;
+                    if(r.legacyAnswers != null) {
+                        // A result whose quiz is gone keeps its marks but loses the answers
+                        r.sheet = AnswerSheet.of(s.quizIndex.get(key(r.quizId)), r.legacyAnswers);
+                        r.legacyAnswers = null;
+                    } else if(r.trueFalseAsBoolean) {
+                        r.sheet.trueFalseToOptionIndex(s.quizIndex.get(key(r.quizId)));
+                    }
+                    r.trueFalseAsBoolean = false;
+                    s.results.add(r);
+                    index(s, r);
+                    break;
+                case Journal.ENROLL:
+                    String[] e = (String[]) payload;
+                    Course c = s.courseIndex.get(key(e[0]));
+                    if(c != null && c.enrollStudent(e[1])) indexEnrollment(s, c, e[1]);
+                    break;
+                case Journal.REGRADE:
+                    RegradeBatch b = (RegradeBatch) payload;
+                    for(int i = 0; i < b.marks.length; i++) {
+                        Result regraded = s.resultIndex.get(resultKey(b.quizId, b.usernames[i]));
+                        if(regraded != null) regraded.marksObtained = b.marks[i];
+                    }
+                    // A regrade can move the minimum or maximum anywhere, so the summary is rebuilt
+                    QuizStats stats = new QuizStats();
+                    AppendLog<Result> quizResults = s.resultsByQuizIndex.get(key(b.quizId));
+                    Quiz regradedQuiz = s.quizIndex.get(key(b.quizId));
+                    if(quizResults != null) for(Result q : quizResults) stats.add(q, regradedQuiz);
+                    s.quizStatsIndex.put(key(b.quizId), stats);
+                    break;
+                case Journal.PASSWORD:
+                    String[] pw = (String[]) payload;
+                    User u = s.userIndex.get(key(pw[0]));
+                    if(u != null) u.passwordHash = pw[1];
+                    break;
+                case Journal.REBIND:
+                    rebind(s, (Rebind) payload);
+                    break;
+                default: throw new IllegalStateException("Unknown journal record " + type);
+            }
+        }
+
+        // Swaps in the given version of each of the quiz's questions; one missing from the store stays as it was.
+        // Papers are rebuilt, since a new version can have a different number of options.
+        void rebind(Store s, Rebind r) {
+            Quiz quiz = s.quizIndex.get(key(r.quizId));
+            if(quiz == null) return;
+            List<Question> rebound = new ArrayList<>(quiz.questions);
+            for(int i = 0; i < rebound.size() && i < r.versions.length; i++) {
+                Question q = s.questionIndex.get(questionKey(rebound.get(i).id, r.versions[i]));
+                if(q != null) rebound.set(i, q);
+                else System.err.println("Quiz " + quiz.id + " cannot be rebound to missing question " + rebound.get(i).id + " v" + r.versions[i]);
+            }
+            quiz.questions = rebound;
+            quiz.papers = null;
+        }
+
+        // Points a quiz at the stored question versions. Quizzes from older stores embed their own copies,
+        // which are added to the store as unassigned questions the first time they are seen.
+        void resolveQuestions(Store s, Quiz quiz) {
+            List<Question> resolved = new ArrayList<>();
+            if(quiz.questionIds != null) {
+                for(int i = 0; i < quiz.questionIds.length; i++) {
+                    Question q = s.questionIndex.get(questionKey(quiz.questionIds[i], quiz.questionVersions[i]));
+                    if(q != null) resolved.add(q);
+                    else System.err.println("Quiz " + quiz.id + " refers to missing question " + quiz.questionIds[i] + " v" + quiz.questionVersions[i]);
+                }
+                quiz.questionIds = null;
+                quiz.questionVersions = null;
+            } else {
+                for(Question embedded : quiz.questions) {
+                    if(embedded.version == 0) embedded.version = 1;
+                    Question q = s.questionIndex.get(questionKey(embedded.id, embedded.version));
+                    if(q == null) apply(s, Journal.QUESTION, q = embedded);
+                    resolved.add(q);
+                }
+            }
+            quiz.questions = resolved;
+        }
+
+        // Asks the persistence thread to fold the journal into a fresh snapshot
+        CompletableFuture<Void> save() {
+            return writer.submit(new PersistenceWriter.Op(null, true));
+        }
+
+        // The store as of a cut: decoded sections by type, and the unloaded ones the storage can write back as they
+        // are stored, with the journal records held back for them as {type, payload} in the order they arrived
+        static class Cut {
+            final Map<Byte, List<?>> sections = new LinkedHashMap<>();
+            final Map<Byte, Storage.Section> unloaded = new HashMap<>();
+            final List<Object[]> held = new ArrayList<>();
+        }
+
+        // Every record as of one consistent cut. Unloaded sections `keep` accepts stay unloaded; the rest are decoded.
+        // Records still queued at the cut are already applied in memory, so they move into `covered` and are not
+        // written separately. Enrollments made after the cut may appear in it too; replaying them again is harmless.
+        Cut cut(Collection<PersistenceWriter.Op> covered, java.util.function.Predicate<Storage.Section> keep) {
+            Store current = store;
+            for(Map.Entry<Byte, Storage.Section> e : new ArrayList<>(current.unloaded.entrySet()))
+                if(!keep.test(e.getValue())) materialize(current, e.getKey());
+            long stamp = cutLock.writeLock();
+            try {
+                writer.queue.drainTo(covered);
+                Store s = store;
+                Cut cut = new Cut();
+                // Under the Store's lock, so no section is decoded between taking it and taking its held records
+                synchronized (s) {
+                    for(byte type : SECTIONS) {
+                        Storage.Section section = s.unloaded.get(type);
+                        if(section == null || !keep.test(section)) continue;
+                        cut.unloaded.put(type, section);
+                        List<Object[]> held = s.pending.get(type);
+                        if(held != null) cut.held.addAll(held);
+                    }
+                }
+                for(byte type : SECTIONS) {
+                    if(cut.unloaded.containsKey(type)) continue;
+                    // Left unloaded only if a reload swapped the store since the decode above
+                    materialize(s, type);
+                    cut.sections.put(type, section(s, type));
+                }
+                return cut;
+            } finally {
+                cutLock.unlockWrite(stamp);
+            }
+        }
+
+        // Every record of a fully materialized store, by snapshot section
+        static Map<Byte, List<?>> sections(Store s) {
+            Map<Byte, List<?>> sections = new LinkedHashMap<>();
+            for(byte type : SECTIONS) sections.put(type, section(s, type));
+            return sections;
+        }
+
+        static List<?> section(Store s, byte type) {
+            switch(type) {
+                case Journal.USER: return s.users.snapshot();
+                case Journal.COURSE: return s.courses.snapshot();
+                case Journal.QUESTION: return s.questions.snapshot();
+                case Journal.QUIZ: return s.quizzes.snapshot();
+                case Journal.RESULT: return s.results.snapshot();
+                default: throw new IllegalArgumentException("Not a snapshot section " + type);
+            }
+        }
+
+        // Told about every mutation, with its journal record type and payload, right after it is applied.
+        // Runs on the mutating thread inside mutate(), so listeners only hand the change off; loading does not notify.
+        interface Listener { void changed(byte type, Object payload); }
+
+        final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+        void addListener(Listener l) { listeners.add(l); }
+        void removeListener(Listener l) { listeners.remove(l); }
+
+        // Queues one mutation for the journal; called inside mutate() so a snapshot cut never splits apply from record
+        CompletableFuture<Void> record(byte type, Object payload) {
+            for(Listener l : listeners) l.changed(type, payload);
+            RECORDS[type].increment();
+            try {
+                return writer.submit(new PersistenceWriter.Op(Journal.encode(type, payload), false));
+            } catch (IOException e) {
+                PersistenceWriter.FAILURES.increment();
+                e.printStackTrace();
+                return save();
+            }
+        }
+
+        // Applies many USER, ENROLL and QUESTION records together, for imports. The cut lock is held exclusively, so
+        // no other writer or snapshot cut interleaves, and the journal gets one BATCH record: after a crash either
+        // the whole batch replays or none of it does. Records that conflict with what is stored by then (a taken
+        // username, an enrollment already present) are skipped; the future completes with how many were applied.
+        CompletableFuture<Integer> commitBatch(List<Object[]> records) {
+            materialize(Journal.QUESTION);
+            List<byte[]> frames = new ArrayList<>(records.size());
+            long stamp = cutLock.writeLock();
+            try {
+                Store s = store;
+                for(Object[] record : records) {
+                    byte type = (Byte) record[0];
+                    Object payload = record[1];
+                    if(type == Journal.USER) {
+                        if(s.userIndex.containsKey(key(((User) payload).getUsername()))) continue;
+                    } else if(type == Journal.ENROLL) {
+                        String[] e = (String[]) payload;
+                        Course c = s.courseIndex.get(key(e[0]));
+                        if(c == null || c.isStudentEnrolled(e[1])) continue;
+                    } else if(type == Journal.QUESTION) {
+                        Question q = (Question) payload;
+                        Question latest = s.latestQuestionIndex.get(q.id);
+                        q.version = latest == null ? 1 : latest.version + 1;
+                    } else {
+                        throw new IllegalArgumentException("Type " + type + " cannot be batched");
+                    }
+                    apply(s, type, payload);
+                    for(Listener l : listeners) l.changed(type, payload);
+                    frames.add(Journal.encode(type, payload));
+                    RECORDS[type].increment();
+                }
+                if(frames.isEmpty()) return CompletableFuture.completedFuture(0);
+                RECORDS[Journal.BATCH].increment();
+                int applied = frames.size();
+                return writer.submit(new PersistenceWriter.Op(Journal.batch(frames), false, applied)).thenApply(v -> applied);
+            } catch (IOException e) {
+                PersistenceWriter.FAILURES.increment();
+                e.printStackTrace();
+                int applied = frames.size();
+                return save().thenApply(v -> applied);
+            } finally {
+                cutLock.unlockWrite(stamp);
+            }
+        }
+
+        boolean usernameExists(String username) {
+            return store.userIndex.containsKey(key(username));
+        }
+        User getUserByUsername(String username) {
+            return store.userIndex.get(key(username));
+        }
+        List<User> getUsers() {
+            return store.users.snapshot();
+        }
+
+        CompletableFuture<Void> addUser(User u) {
+            return mutate(u.getUsername(), () -> {
+                Store s = store;
+                if(s.userIndex.containsKey(key(u.getUsername())))
+                    return CompletableFuture.failedFuture(new IllegalStateException("Username already taken."));
+                apply(s, Journal.USER, u);
+                return record(Journal.USER, u);
+            });
+        }
+        // Checks the password on the hashing pool and completes with null if it is wrong.
+        // Accounts still on an older hash or cost are rehashed once the password is known to be right.
+        CompletableFuture<User> authenticate(User u, String password) {
+            return CompletableFuture.supplyAsync(() -> {
+                long start = System.nanoTime();
+                String stored = u.getPasswordHash();
+                boolean ok = Utils.verifyPassword(password, stored);
+                AUTHENTICATE.recordSince(start);
+                if(!ok) return null;
+                if(Utils.needsRehash(stored)) updatePasswordHash(u, stored, Utils.hashPassword(password));
+                return u;
+            }, Utils.HASH_POOL);
+        }
+        // Skipped if another login upgraded the hash first
+        CompletableFuture<Void> updatePasswordHash(User u, String previous, String hash) {
+            return mutate(u.getUsername(), () -> {
+                if(!Objects.equals(u.passwordHash, previous)) return CompletableFuture.<Void>completedFuture(null);
+                u.passwordHash = hash;
+                return record(Journal.PASSWORD, new String[]{u.getUsername(), hash});
+            });
+        }
+        boolean courseCodeExists(String code) {
+            return store.courseIndex.containsKey(key(code));
+        }
+        CompletableFuture<Void> addCourse(Course c) {
+            return mutate(c.courseCode, () -> {
+                Store s = store;
+                if(s.courseIndex.containsKey(key(c.courseCode)))
+                    return CompletableFuture.failedFuture(new IllegalStateException("Course code already exists"));
+                apply(s, Journal.COURSE, c);
+                return record(Journal.COURSE, c);
+            });
+        }
+        Course getCourseByCode(String code) {
+            return store.courseIndex.get(key(code));
+        }
+        List<Course> getCourses() {
+            return store.courses.snapshot();
+        }
+        // Stores q in a course's bank. Reusing an existing ID stores the next version; quizzes built on earlier versions keep them.
+        CompletableFuture<Void> addQuestion(String courseCode, Question q) {
+            materialize(Journal.QUESTION);
+            return mutate(q.id, () -> {
+                Store s = store;
+                Question latest = s.latestQuestionIndex.get(q.id);
+                q.courseCode = courseCode;
+                q.version = latest == null ? 1 : latest.version + 1;
+                apply(s, Journal.QUESTION, q);
+                return record(Journal.QUESTION, q);
+            });
+        }
+        List<Quiz> getQuizzes() {
+            materialize(Journal.QUIZ);
+            return store.quizzes.snapshot();
+        }
+        // Every stored version of every question
+        List<Question> getQuestions() {
+            materialize(Journal.QUESTION);
+            return store.questions.snapshot();
+        }
+        // The newest version of each question in the course's bank, plus unassigned questions from older stores
+        List<Question> getQuestionBank(String courseCode) {
+            materialize(Journal.QUESTION);
+            long start = System.nanoTime();
+            Store s = store;
+            List<Question> bank = new ArrayList<>();
+            for(String k : new String[]{key(courseCode), ""}) {
+                AppendLog<Question> log = s.questionsByCourseIndex.get(k);
+                if(log == null) continue;
+                for(Question q : log.snapshot())
+                    if(s.latestQuestionIndex.get(q.id) == q) bank.add(q);
+            }
+            QUESTION_BANK.recordSince(start);
+            return bank;
+        }
+        CompletableFuture<Void> addQuiz(Quiz q) {
+            materialize(Journal.QUIZ);
+            return mutate(q.courseCode, () -> {
+                apply(store, Journal.QUIZ, q);
+                return record(Journal.QUIZ, q);
+            });
+        }
+        List<Quiz> getQuizzesByCourse(String courseCode) {
+            return getQuizzesEndingAfter(courseCode, Long.MIN_VALUE);
+        }
+        // Quizzes of a course whose end time is at or after the given instant, earliest deadline first
+        List<Quiz> getQuizzesEndingAfter(String courseCode, long time) {
+            List<Quiz> list = new ArrayList<>();
+            materialize(Journal.QUIZ);
+            long start = System.nanoTime();
+            NavigableMap<Long, AppendLog<Quiz>> byEnd = store.quizzesByCourseIndex.get(key(courseCode));
+            if(byEnd != null) for(AppendLog<Quiz> qs : byEnd.tailMap(time, true).values()) list.addAll(qs.snapshot());
+            QUIZZES_ENDING_AFTER.recordSince(start);
+            return list;
+        }
+        List<Course> getCoursesForStudent(String username) {
+            AppendLog<Course> courses = store.coursesByStudentIndex.get(username);
+            return courses == null ? Collections.emptyList() : courses.snapshot();
+        }
+        Quiz getQuizById(String id) {
+            materialize(Journal.QUIZ);
+            return store.quizIndex.get(key(id));
+        }
+        // Short IDs are the first 6 characters shown in the student quiz table
+        Quiz getQuizByShortId(String shortId) {
+            materialize(Journal.QUIZ);
+            return store.quizShortIdIndex.get(shortId);
+        }
+        // Results share their quiz's course stripe, so a second submission for the same attempt is rejected atomically
+        CompletableFuture<Void> addResult(Result r) {
+            materialize(Journal.RESULT);
+            Quiz quiz = getQuizById(r.quizId);
+            return mutate(quiz != null ? quiz.courseCode : r.quizId, () -> {
+                Store s = store;
+                if(s.resultIndex.containsKey(resultKey(r.quizId, r.studentUsername)))
+                    return CompletableFuture.failedFuture(new IllegalStateException("Quiz already attempted."));
+                apply(s, Journal.RESULT, r);
+                return record(Journal.RESULT, r);
+            });
+        }
+        Result getResult(String quizId, String studentUsername) {
+            materialize(Journal.RESULT);
+            return store.resultIndex.get(resultKey(quizId, studentUsername));
+        }
+        List<Result> getResults() {
+            materialize(Journal.RESULT);
+            return store.results.snapshot();
+        }
+        // Enrolling a student twice changes nothing, so nothing is journaled or announced
+        CompletableFuture<Void> enrollStudent(Course c, String username) {
+            return mutate(c.courseCode, () -> {
+                if(!c.enrollStudent(username)) return CompletableFuture.<Void>completedFuture(null);
+                indexEnrollment(store, c, username);
+                return record(Journal.ENROLL, new String[]{c.courseCode, username});
+            });
+        }
+        // The quiz's questions at their newest stored version, or null when none was edited after the quiz was created
+        List<Question> latestQuestions(Quiz quiz) {
+            materialize(Journal.QUESTION);
+            List<Question> latest = new ArrayList<>(quiz.questions);
+            boolean newer = false;
+            for(int i = 0; i < latest.size(); i++) {
+                Question q = store.latestQuestionIndex.get(latest.get(i).id);
+                if(q != null && q.version > latest.get(i).version) {
+                    latest.set(i, q);
+                    newer = true;
+                }
+            }
+            return newer ? latest : null;
+        }
+        // Stores the new marks in memory and journals them as one record
+        CompletableFuture<Void> applyRegrade(RegradeBatch batch) {
+            return applyRegrade(batch, null);
+        }
+        // With `questions`, the quiz is first rebound to those versions, the ones the batch was graded against, so
+        // later submissions are graded the same way. Both records go to the journal as one BATCH, so after a crash
+        // the quiz is never left rebound without its marks or the other way round; QuizStats is rebuilt by REGRADE.
+        CompletableFuture<Void> applyRegrade(RegradeBatch batch, List<Question> questions) {
+            materialize(Journal.RESULT);
+            Quiz quiz = getQuizById(batch.quizId);
+            return mutate(quiz != null ? quiz.courseCode : batch.quizId, () -> {
+                if(questions == null) {
+                    apply(store, Journal.REGRADE, batch);
+                    return record(Journal.REGRADE, batch);
+                }
+                int[] versions = new int[questions.size()];
+                for(int i = 0; i < versions.length; i++) versions[i] = questions.get(i).version;
+                Rebind rebind = new Rebind(batch.quizId, versions);
+                apply(store, Journal.REBIND, rebind);
+                apply(store, Journal.REGRADE, batch);
+                for(Listener l : listeners) {
+                    l.changed(Journal.REBIND, rebind);
+                    l.changed(Journal.REGRADE, batch);
+                }
+                RECORDS[Journal.REBIND].increment();
+                RECORDS[Journal.REGRADE].increment();
+                RECORDS[Journal.BATCH].increment();
+                try {
+                    return writer.submit(new PersistenceWriter.Op(Journal.batch(List.of(Journal.encode(Journal.REBIND, rebind),
+                            Journal.encode(Journal.REGRADE, batch))), false, 2));
+                } catch (IOException e) {
+                    PersistenceWriter.FAILURES.increment();
+                    e.printStackTrace();
+                    return save();
+                }
+            });
+        }
+        // A copy of the quiz's marks summary; all zero before the first submission
+        QuizStats getQuizStats(String quizId) {
+            materialize(Journal.RESULT);
+            QuizStats stats = store.quizStatsIndex.get(key(quizId));
+            return stats == null ? new QuizStats() : stats.copy();
+        }
+        List<Result> getResultsByQuiz(String quizId) {
+            materialize(Journal.RESULT);
+            AppendLog<Result> results = store.resultsByQuizIndex.get(key(quizId));
+            return results == null ? Collections.emptyList() : results.snapshot();
+        }
+    }
+
+    static DataManager dm = new DataManager();
+
+    // Fires when a quiz opens and when it closes. Each quiz is queued once, at load or when it is added, as two
+    // timed events in a DelayQueue, so one thread sleeps until the next deadline instead of polling every quiz.
+    // Quizzes are never edited after they are stored, so their times cannot move once queued.
+    static class QuizScheduler implements DataManager.Listener {
+        static final int STARTED = 0, ENDED = 1;
+
+        // Runs on the scheduler thread; UI listeners hand off to the EDT
+        interface Listener { void quizEvent(int event, Quiz quiz); }
+
+        static class Event implements Delayed {
+            final int kind;
+            final Quiz quiz;
+            final long at;
+
+            Event(int kind, Quiz quiz, long at) {
+                this.kind = kind;
+                this.quiz = quiz;
+                this.at = at;
+            }
+
+            @Override
+            public long getDelay(TimeUnit unit) {
+                return unit.convert(at - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+            }
+
+            @Override
+            public int compareTo(Delayed o) {
+                return Long.compare(at, ((Event) o).at);
+            }
+        }
+
+        final DelayQueue<Event> queue = new DelayQueue<>();
+        final Set<String> scheduled = ConcurrentHashMap.newKeySet();
+        final List<Listener> listeners = new CopyOnWriteArrayList<>();
+        Thread thread;
+
+        void addListener(Listener l) { listeners.add(l); }
+        void removeListener(Listener l) { listeners.remove(l); }
+
+        // Safe to call on every login; the initial pass over stored quizzes runs on the scheduler thread
+        synchronized void start() {
+            if(thread != null) return;
+            dm.addListener(this);
+            thread = new Thread(this::run, "exam-scheduler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void schedule(Quiz q) {
+            if(!scheduled.add(q.id)) return;
+            long now = System.currentTimeMillis(), start = q.startTime.getTime(), end = q.getEndTime();
+            if(start > now) queue.add(new Event(STARTED, q, start));
+            if(end > now) queue.add(new Event(ENDED, q, end));
+        }
+
+        @Override
+        public void changed(byte type, Object payload) {
+            if(type == Journal.QUIZ) schedule((Quiz) payload);
+        }
+
+        void run() {
+            for(Quiz q : dm.getQuizzes()) schedule(q);
+            while(true) {
+                Event e;
+                try {
+                    e = queue.take();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                for(Listener l : listeners) {
+                    try {
+                        l.quizEvent(e.kind, e.quiz);
+                    } catch (RuntimeException ex) {
+                        ex.printStackTrace();
+                    }
+                }
+            }
+        }
+    }
+
+    static final QuizScheduler scheduler = new QuizScheduler();
+
+    // Answers of attempts in progress, one append-only file per (quiz, student) under attempts/, so an attempt cut
+    // short by a crash resumes where it stopped. Edits only land in a pending map; one shared thread writes each
+    // attempt at most once per DEBOUNCE_MS, and a record holds just the text after the prefix already on disk.
+    static class AttemptJournal {
+        static final File DIR = new File(System.getProperty("exam.attemptDir", "attempts"));
+        static final long DEBOUNCE_MS = Long.getLong("exam.attemptDebounceMs", 500);
+        // Rewritten with only the current answers once the file holds this many records per answer
+        static final int COMPACT_FACTOR = 16;
+        // All file access for every attempt happens here, so writes never block the EDT or a request thread
+        static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "exam-attempts");
+            t.setDaemon(true);
+            return t;
+        });
+
+        final File file;
+        final Map<Integer, String> restored;
+        final Map<Integer, String> written;     // as the file has it; writer thread only
+        final Map<Integer, String> pending = new HashMap<>();
+        int records;
+        boolean scheduled, discarded, closed;
+
+        AttemptJournal(File file, Map<Integer, String> restored, int records) {
+            this.file = file;
+            this.restored = Collections.unmodifiableMap(restored);
+            this.written = new HashMap<>(restored);
+            this.records = records;
+        }
+
+        // Reads whatever an earlier run left for this attempt
+        static File file(String quizId, String username) {
+            return new File(DIR, Utils.sha256(quizId + '\0' + username));
+        }
+
+        static boolean exists(String quizId, String username) {
+            return file(quizId, username).exists();
+        }
+
+        static AttemptJournal open(String quizId, String username) {
+            File file = file(quizId, username);
+            Map<Integer, String> answers = new HashMap<>();
+            int records = 0;
+            try {
+                // Read on the writer thread, after anything a closed journal for the same attempt still had queued
+                records = WRITER.submit(() -> read(file, answers)).get();
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new AttemptJournal(file, answers, records);
+        }
+
+        // Record layout: payload length, CRC32 of payload, then question index, kept prefix length and new tail
+        static int read(File file, Map<Integer, String> answers) throws IOException {
+            if(!file.exists()) return 0;
+            int records = 0;
+            long good = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                while(true) {
+                    byte[] bytes;
+                    int checksum;
+                    try {
+                        int len = in.readInt();
+                        checksum = in.readInt();
+                        if(len < 0 || len > file.length()) break;
+                        bytes = new byte[len];
+                        in.readFully(bytes);
+                    } catch(EOFException e) { break; }
+                    java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+                    crc.update(bytes);
+                    if((int) crc.getValue() != checksum) break;
+                    Codec.Reader r = Codec.reader(ByteBuffer.wrap(bytes));
+                    int question = r.varint(), keep = r.varint();
+                    String tail = r.string(), previous = answers.getOrDefault(question, "");
+                    if(keep > previous.length()) break;
+                    answers.put(question, previous.substring(0, keep) + tail);
+                    good += 8 + bytes.length;
+                    records++;
+                }
+            }
+            // A torn tail is cut off so the next append starts on a record boundary
+            if(good < file.length()) {
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(good);
+                }
+            }
+            return records;
+        }
+
+        // Cheap enough for every keystroke: nothing but a map update until the debounce window closes
+        synchronized void put(int question, String answer) {
+            if(discarded || closed) return;
+            pending.put(question, answer);
+            if(!scheduled) {
+                scheduled = true;
+                WRITER.schedule(this::flush, DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void flush() {
+            Map<Integer, String> batch;
+            synchronized (this) {
+                scheduled = false;
+                if(discarded || pending.isEmpty()) return;
+                batch = new HashMap<>(pending);
+                pending.clear();
+            }
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                int count = 0;
+                for(Map.Entry<Integer, String> e : batch.entrySet()) {
+                    String before = written.getOrDefault(e.getKey(), ""), after = e.getValue();
+                    if(after.equals(before)) continue;
+                    int keep = 0, max = Math.min(before.length(), after.length());
+                    while(keep < max && before.charAt(keep) == after.charAt(keep)) keep++;
+                    // Never split a surrogate pair between the kept prefix and the tail
+                    if(keep > 0 && Character.isHighSurrogate(after.charAt(keep - 1))) keep--;
+                    bytes.write(frame(e.getKey(), keep, after.substring(keep)));
+                    written.put(e.getKey(), after);
+                    count++;
+                }
+                if(count == 0) return;
+                records += count;
+                if(records > COMPACT_FACTOR * Math.max(written.size(), 4)) {
+                    compact();
+                    return;
+                }
+                DIR.mkdirs();
+                try (FileOutputStream out = new FileOutputStream(file, true)) {
+                    out.write(bytes.toByteArray());
+                    out.getChannel().force(false);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        static byte[] frame(int question, int keep, String tail) throws IOException {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            Codec.Writer w = new Codec.Writer(new DataOutputStream(payload));
+            w.varint(question);
+            w.varint(keep);
+            w.string(tail);
+            w.out.flush();
+            byte[] bytes = payload.toByteArray();
+            java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+            crc.update(bytes);
+            ByteArrayOutputStream frame = new ByteArrayOutputStream(bytes.length + 8);
+            DataOutputStream out = new DataOutputStream(frame);
+            out.writeInt(bytes.length);
+            out.writeInt((int) crc.getValue());
+            out.write(bytes);
+            return frame.toByteArray();
+        }
+
+        // Writes the current answers to a temporary file and renames it over the journal
+        void compact() throws IOException {
+            File tmp = new File(DIR, file.getName() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                for(Map.Entry<Integer, String> e : written.entrySet()) out.write(frame(e.getKey(), 0, e.getValue()));
+                out.getChannel().force(false);
+            }
+            java.nio.file.Files.move(tmp.toPath(), file.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING,
+                    java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+            records = written.size();
+        }
+
+        // Restored answers keyed by question id, the way attempt screens hold them
+        Map<String, String> answers(Quiz quiz) {
+            Map<String, String> byId = new ConcurrentHashMap<>();
+            for(Map.Entry<Integer, String> e : restored.entrySet())
+                if(e.getKey() < quiz.questions.size()) byId.put(quiz.questions.get(e.getKey()).getId(), e.getValue());
+            return byId;
+        }
+
+        // Whoever held the attempt let go of it: edits still pending are written and later ones ignored, so the file
+        // is there for the next AttemptJournal.open()
+        void close() {
+            synchronized (this) {
+                if(discarded || closed) return;
+                closed = true;
+            }
+            WRITER.execute(this::flush);
+        }
+
+        // The attempt was submitted; later edits are ignored and the file is removed
+        void discard() {
+            synchronized (this) {
+                if(discarded) return;
+                discarded = true;
+                pending.clear();
+            }
+            WRITER.execute(file::delete);
+        }
+    }
+
+    // Swing models over DataManager. They hold references to stored objects, build display text only for rows
+    // being painted, and turn DataManager changes into row-level events on the EDT instead of rebuilding.
+    static class CourseListModel extends AbstractListModel<String> implements DataManager.Listener {
+        private static final long serialVersionUID = 1L;
+        List<Course> courses = dm.getCourses();
+
+        @Override
+        public int getSize() { return courses.size(); }
+
+        @Override
+        public String getElementAt(int index) {
+            Course c = courses.get(index);
+            return c.courseCode + " - " + c.courseName;
+        }
+
+        Course courseAt(int index) { return courses.get(index); }
+
+        // Courses are only ever appended, so a newer view differs from the current one by its tail
+        @Override
+        public void changed(byte type, Object payload) {
+            if(type != Journal.COURSE) return;
+            SwingUtilities.invokeLater(() -> {
+                int before = courses.size();
+                courses = dm.getCourses();
+                if(courses.size() > before) fireIntervalAdded(this, before, courses.size() - 1);
+            });
+        }
+    }
+
+    // The newest version of each question in a course's bank; a new version replaces its row in place
+    static class QuestionBankModel extends AbstractListModel<String> implements DataManager.Listener {
+        private static final long serialVersionUID = 1L;
+        final String courseCode;
+        final List<Question> questions;
+        final Map<String, Integer> rowById = new HashMap<>();
+
+        QuestionBankModel(String courseCode) {
+            this.courseCode = courseCode;
+            questions = new ArrayList<>(dm.getQuestionBank(courseCode));
+            for(int i = 0; i < questions.size(); i++) rowById.put(questions.get(i).id, i);
+        }
+
+        @Override
+        public int getSize() { return questions.size(); }
+
+        @Override
+        public String getElementAt(int index) {
+            Question q = questions.get(index);
+            return q.id + (q.version > 1 ? " (v" + q.version + ")" : "") + ": " + q.questionText;
+        }
+
+        Question questionAt(int index) { return questions.get(index); }
+
+        @Override
+        public void changed(byte type, Object payload) {
+            if(type != Journal.QUESTION) return;
+            Question q = (Question) payload;
+            SwingUtilities.invokeLater(() -> {
+                boolean ours = q.courseCode == null || DataManager.key(q.courseCode).equals(DataManager.key(courseCode));
+                Integer row = rowById.get(q.id);
+                if(row != null && ours) {
+                    questions.set(row, q);
+                    fireContentsChanged(this, row, row);
+                } else if(row != null) {
+                    // The newest version now belongs to another course's bank
+                    questions.remove((int) row);
+                    rowById.remove(q.id);
+                    for(int i = row; i < questions.size(); i++) rowById.put(questions.get(i).id, i);
+                    fireIntervalRemoved(this, row, row);
+                } else if(ours) {
+                    rowById.put(q.id, questions.size());
+                    questions.add(q);
+                    fireIntervalAdded(this, questions.size() - 1, questions.size() - 1);
+                }
+            });
+        }
+    }
+
+    // A student's upcoming and active quizzes. Status is worked out when a row is painted, so it stays current between reloads.
+    static class StudentQuizTableModel extends AbstractTableModel implements DataManager.Listener, QuizScheduler.Listener {
+        private static final long serialVersionUID = 1L;
+        static final String[] COLUMNS = {"Quiz ID", "Course", "Start", "Duration", "Status"};
+        final String username;
+        final List<Quiz> quizzes = new ArrayList<>();
+        final List<Course> courses = new ArrayList<>();
+        final Set<String> listed = new HashSet<>();
+
+        StudentQuizTableModel(String username) {
+            this.username = username;
+            reload();
+        }
+
+        // Only the student's own courses, and only quizzes that have not ended
+        void reload() {
+            quizzes.clear();
+            courses.clear();
+            listed.clear();
+            long now = System.currentTimeMillis();
+            for(Course c : dm.getCoursesForStudent(username))
+                for(Quiz q : dm.getQuizzesEndingAfter(c.courseCode, now)) add(q, c);
+            fireTableDataChanged();
+        }
+
+        boolean add(Quiz q, Course c) {
+            if(!listed.add(q.id)) return false;
+            quizzes.add(q);
+            courses.add(c);
+            return true;
+        }
+
+        Quiz quizAt(int row) { return quizzes.get(row); }
+
+        @Override
+        public int getRowCount() { return quizzes.size(); }
+
+        @Override
+        public int getColumnCount() { return COLUMNS.length; }
+
+        @Override
+        public String getColumnName(int column) { return COLUMNS[column]; }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Quiz q = quizzes.get(row);
+            switch(column) {
+                case 0: return q.id.substring(0,6);
+                case 1: return courses.get(row).courseName;
+                case 2: return Utils.formatDate(q.startTime);
+                case 3: return q.durationMinutes;
+                default: return System.currentTimeMillis() < q.startTime.getTime() ? "Upcoming" : "Active";
+            }
+        }
+
+        @Override
+        public void changed(byte type, Object payload) {
+            if(type == Journal.QUIZ) {
+                Quiz q = (Quiz) payload;
+                SwingUtilities.invokeLater(() -> {
+                    Course c = dm.getCourseByCode(q.courseCode);
+                    if(c == null || !c.isStudentEnrolled(username) || q.getEndTime() < System.currentTimeMillis()) return;
+                    if(add(q, c)) fireTableRowsInserted(quizzes.size() - 1, quizzes.size() - 1);
+                });
+            } else if(type == Journal.ENROLL && username.equals(((String[]) payload)[1])) {
+                String courseCode = ((String[]) payload)[0];
+                SwingUtilities.invokeLater(() -> {
+                    Course c = dm.getCourseByCode(courseCode);
+                    if(c == null) return;
+                    int first = quizzes.size();
+                    for(Quiz q : dm.getQuizzesEndingAfter(c.courseCode, System.currentTimeMillis())) add(q, c);
+                    if(quizzes.size() > first) fireTableRowsInserted(first, quizzes.size() - 1);
+                });
+            }
+        }
+
+        // An opening quiz changes its status cell; a closing one leaves the table
+        @Override
+        public void quizEvent(int event, Quiz quiz) {
+            SwingUtilities.invokeLater(() -> {
+                if(!listed.contains(quiz.id)) return;
+                // Matched by id: the event may carry the copy from before a reload
+                int row = 0;
+                while(!quizzes.get(row).id.equals(quiz.id)) row++;
+                if(event == QuizScheduler.STARTED) {
+                    fireTableCellUpdated(row, COLUMNS.length - 1);
+                } else {
+                    quizzes.remove(row);
+                    courses.remove(row);
+                    listed.remove(quiz.id);
+                    fireTableRowsDeleted(row, row);
+                }
+            });
+        }
+    }
+
+    // Latency histograms, counters and gauges, published over JMX as one MBean per group, "ExamSystem:type=<group>",
+    // for jconsole or any JMX client on the machine. A metric's group is the part of its name before the first dot.
+    // Hot paths hold their Histogram or LongAdder in a static field, so recording never looks anything up by name.
+    static class Metrics {
+        static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+        static final Map<String, java.util.concurrent.atomic.LongAdder> COUNTERS = new ConcurrentHashMap<>();
+        static final Map<String, java.util.function.Supplier<Number>> GAUGES = new ConcurrentHashMap<>();
+        static final Set<String> GROUPS = ConcurrentHashMap.newKeySet();
+
+        static Histogram histogram(String name) {
+            Histogram h = HISTOGRAMS.computeIfAbsent(name, k -> new Histogram());
+            publish(name);
+            return h;
+        }
+
+        static java.util.concurrent.atomic.LongAdder counter(String name) {
+            java.util.concurrent.atomic.LongAdder c = COUNTERS.computeIfAbsent(name, k -> new java.util.concurrent.atomic.LongAdder());
+            publish(name);
+            return c;
+        }
+
+        // Read only when a JMX client asks; a later registration under the same name replaces the earlier one
+        static void gauge(String name, java.util.function.Supplier<Number> value) {
+            GAUGES.put(name, value);
+            publish(name);
+        }
+
+        static String group(String name) {
+            int dot = name.indexOf('.');
+            return dot < 0 ? name : name.substring(0, dot);
+        }
+
+        static void publish(String name) {
+            String group = group(name);
+            if(!GROUPS.add(group)) return;
+            try {
+                java.lang.management.ManagementFactory.getPlatformMBeanServer()
+                        .registerMBean(new Group(group), new javax.management.ObjectName("ExamSystem:type=" + group));
+            } catch (javax.management.JMException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // Log-linear buckets as in HdrHistogram: 16 linear steps per power of two, so every recorded value is reported
+        // within 1/16 of itself, from 1 ns up to Long.MAX_VALUE, in a fixed array of 960 counts. Recording is lock-free.
+        static class Histogram {
+            static final int SUB_BITS = 4, SUB = 1 << SUB_BITS;
+            final java.util.concurrent.atomic.AtomicLongArray counts = new java.util.concurrent.atomic.AtomicLongArray((64 - SUB_BITS) * SUB);
+            final java.util.concurrent.atomic.LongAdder count = new java.util.concurrent.atomic.LongAdder();
+            final java.util.concurrent.atomic.LongAdder sum = new java.util.concurrent.atomic.LongAdder();
+            final java.util.concurrent.atomic.LongAccumulator max = new java.util.concurrent.atomic.LongAccumulator(Math::max, 0);
+
+            static int bucket(long value) {
+                if(value < SUB) return (int) value;
+                int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+                return (shift + 1) * SUB + (int) ((value >>> shift) - SUB);
+            }
+
+            // Middle of the bucket's range
+            static long value(int bucket) {
+                if(bucket < SUB) return bucket;
+                int shift = bucket / SUB - 1;
+                return ((long) (bucket % SUB + SUB) << shift) + (1L << shift >> 1);
+            }
+
+            void record(long nanos) {
+                if(nanos < 0) nanos = 0;
+                counts.incrementAndGet(bucket(nanos));
+                count.increment();
+                sum.add(nanos);
+                max.accumulate(nanos);
+            }
+
+            void recordSince(long startNanos) {
+                record(System.nanoTime() - startNanos);
+            }
+
+            long count() {
+                return count.sum();
+            }
+
+            double mean() {
+                long n = count.sum();
+                return n == 0 ? 0 : (double) sum.sum() / n;
+            }
+
+            long percentile(double p) {
+                long n = count.sum(), rank = (long) Math.ceil(p / 100 * n), seen = 0;
+                if(n == 0) return 0;
+                for(int i = 0; i < counts.length(); i++) {
+                    seen += counts.get(i);
+                    if(seen >= rank) return Math.min(value(i), max.get());
+                }
+                return max.get();
+            }
+        }
+
+        // Attributes are computed when read, from whatever metrics the group has by then
+        static class Group implements javax.management.DynamicMBean {
+            static final double[] PERCENTILES = {50, 90, 99, 99.9};
+            static final String[] LABELS = {"P50", "P90", "P99", "P999"};
+            final String group;
+
+            Group(String group) { this.group = group; }
+
+            // Histograms report microseconds
+            Map<String, Object> values() {
+                Map<String, Object> values = new TreeMap<>();
+                String prefix = group + ".";
+                for(Map.Entry<String, Histogram> e : HISTOGRAMS.entrySet()) {
+                    if(!e.getKey().startsWith(prefix)) continue;
+                    String name = e.getKey().substring(prefix.length());
+                    Histogram h = e.getValue();
+                    values.put(name + "Count", h.count());
+                    values.put(name + "MeanMicros", h.mean() / 1000);
+                    for(int i = 0; i < PERCENTILES.length; i++) values.put(name + LABELS[i] + "Micros", h.percentile(PERCENTILES[i]) / 1000.0);
+                    values.put(name + "MaxMicros", h.max.get() / 1000.0);
+                }
+                for(Map.Entry<String, java.util.concurrent.atomic.LongAdder> e : COUNTERS.entrySet())
+                    if(e.getKey().startsWith(prefix)) values.put(e.getKey().substring(prefix.length()), e.getValue().sum());
+                for(Map.Entry<String, java.util.function.Supplier<Number>> e : GAUGES.entrySet())
+                    if(e.getKey().startsWith(prefix)) values.put(e.getKey().substring(prefix.length()), e.getValue().get());
+                return values;
+            }
+
+            @Override
+            public Object getAttribute(String attribute) throws javax.management.AttributeNotFoundException {
+                Object value = values().get(attribute);
+                if(value == null) throw new javax.management.AttributeNotFoundException(attribute);
+                return value;
+            }
+
+            @Override
+            public javax.management.AttributeList getAttributes(String[] attributes) {
+                Map<String, Object> values = values();
+                javax.management.AttributeList list = new javax.management.AttributeList();
+                for(String a : attributes) if(values.containsKey(a)) list.add(new javax.management.Attribute(a, values.get(a)));
+                return list;
+            }
+
+            @Override
+            public void setAttribute(javax.management.Attribute attribute) throws javax.management.AttributeNotFoundException {
+                throw new javax.management.AttributeNotFoundException(attribute.getName() + " is read-only");
+            }
+
+            @Override
+            public javax.management.AttributeList setAttributes(javax.management.AttributeList attributes) {
+                return new javax.management.AttributeList();
+            }
+
+            @Override
+            public Object invoke(String action, Object[] params, String[] signature) throws javax.management.ReflectionException {
+                throw new javax.management.ReflectionException(new NoSuchMethodException(action));
+            }
+
+            @Override
+            public javax.management.MBeanInfo getMBeanInfo() {
+                List<javax.management.MBeanAttributeInfo> attributes = new ArrayList<>();
+                for(Map.Entry<String, Object> e : values().entrySet())
+                    attributes.add(new javax.management.MBeanAttributeInfo(e.getKey(), e.getValue().getClass().getName(), e.getKey(), true, false, false));
+                return new javax.management.MBeanInfo(getClass().getName(), group + " metrics",
+                        attributes.toArray(new javax.management.MBeanAttributeInfo[0]), null, null, null);
+            }
+        }
+    }
+
+    // Utility hashing class.
+    // Hashes are "pbkdf2$<iterations>$<salt>$<hash>" (PBKDF2-HMAC-SHA256, hex); accounts created before that
+    // hold a bare SHA-256 hex digest, which DataManager.authenticate replaces at the next successful login.
+    static class Utils {
+        static final String PBKDF2_PREFIX = "pbkdf2$";
+        static final int PBKDF2_ITERATIONS = Integer.getInteger("exam.pbkdf2Iterations", 100_000);
+        static final int SALT_BYTES = 16, HASH_BITS = 256;
+        static final char[] HEX = "0123456789abcdef".toCharArray();
+        // SimpleDateFormat is not thread-safe, so each thread (in practice the EDT) keeps its own
+        static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyy-MM-dd HH:mm"));
+        static final java.security.SecureRandom RANDOM = new java.security.SecureRandom();
+        // Hashing is deliberately slow, so it never runs on the EDT or a request thread; one thread per core by default
+        static final ExecutorService HASH_POOL = Executors.newFixedThreadPool(
+                Integer.getInteger("exam.hashThreads", Runtime.getRuntime().availableProcessors()), r -> {
+                    Thread t = new Thread(r, "exam-hash");
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        static String hashPassword(String password) {
+            return hashPassword(password, PBKDF2_ITERATIONS);
+        }
+
+        static String hashPassword(String password, int iterations) {
+            byte[] salt = new byte[SALT_BYTES];
+            RANDOM.nextBytes(salt);
+            return PBKDF2_PREFIX + iterations + "$" + hex(salt) + "$" + hex(pbkdf2(password, salt, iterations));
+        }
+
+        static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+            javax.crypto.spec.PBEKeySpec spec = new javax.crypto.spec.PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+            try {
+                return javax.crypto.SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            } catch(java.security.GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                spec.clearPassword();
+            }
+        }
+
+        // The original unsalted scheme, kept to verify accounts that have not logged in since
+        static String sha256(String password) {
+            try {
+                return hex(MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8)));
+            } catch(java.security.NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        static boolean verifyPassword(String password, String stored) {
+            if(stored == null) return false;
+            if(!stored.startsWith(PBKDF2_PREFIX))
+                return MessageDigest.isEqual(sha256(password).getBytes(StandardCharsets.US_ASCII), stored.getBytes(StandardCharsets.US_ASCII));
+            String[] parts = stored.split("\\$");
+            if(parts.length != 4) return false;
+            try {
+                byte[] expected = unhex(parts[3]);
+                return MessageDigest.isEqual(pbkdf2(password, unhex(parts[2]), Integer.parseInt(parts[1])), expected);
+            } catch(IllegalArgumentException e) {
+                return false;
+            }
+        }
+
+        static boolean needsRehash(String stored) {
+            return stored == null || !stored.startsWith(PBKDF2_PREFIX + PBKDF2_ITERATIONS + "$");
+        }
+
+        static String formatDate(Date date) {
+            return DATE_FORMAT.get().format(date);
+        }
+
+        static String hex(byte[] bytes) {
+            char[] out = new char[bytes.length * 2];
+            for(int i = 0; i < bytes.length; i++) {
+                out[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+                out[2 * i + 1] = HEX[bytes[i] & 0xF];
+            }
+            return new String(out);
+        }
+
+        static byte[] unhex(String s) {
+            if((s.length() & 1) != 0) throw new IllegalArgumentException("Odd hex length");
+            byte[] out = new byte[s.length() / 2];
+            for(int i = 0; i < out.length; i++) {
+                int hi = Character.digit(s.charAt(2 * i), 16), lo = Character.digit(s.charAt(2 * i + 1), 16);
+                if(hi < 0 || lo < 0) throw new IllegalArgumentException("Bad hex digit");
+                out[i] = (byte) (hi << 4 | lo);
+            }
+            return out;
+        }
+    }
+
+    // Headless exam server: the student quiz flow over HTTP, sharing the same DataManager and grading model.
+    // Start with "--server [port]". Requests are form-encoded, responses are JSON, and sessions use a bearer token.
+    static class ExamServer {
+        static final int DEFAULT_PORT = 8080;
+        // Submissions arriving this long after the deadline are still accepted, to absorb network latency
+        static final long SUBMIT_GRACE_MS = 30_000;
+        // A session not used for this long is dropped; its attempts stay on disk for the next login
+        static final long SESSION_IDLE_MS = Long.getLong("exam.sessionIdleMs", 30 * 60_000);
+
+        static class Session {
+            final Student student;
+            // quizId -> questionId -> answer, for attempts in progress
+            final Map<String, Map<String, String>> attempts = new ConcurrentHashMap<>();
+            final Map<String, AttemptJournal> journals = new ConcurrentHashMap<>();
+            volatile long lastUsed = System.currentTimeMillis();
+
+            Session(Student student) { this.student = student; }
+        }
+
+        static class HttpError extends Exception {
+            private static final long serialVersionUID = 1L;
+            final int status;
+
+            HttpError(int status, String message) {
+                super(message);
+                this.status = status;
+            }
+        }
+
+        interface Route { String handle(com.sun.net.httpserver.HttpExchange ex, Map<String, String> params) throws Exception; }
+
+        final Map<String, Session> sessions = new ConcurrentHashMap<>();
+        final java.security.SecureRandom random = new java.security.SecureRandom();
+        final ScheduledExecutorService housekeeping = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "exam-sessions");
+            t.setDaemon(true);
+            return t;
+        });
+        com.sun.net.httpserver.HttpServer http;
+
+        public static void main(String[] args) throws IOException {
+            int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+            // Without TCP_NODELAY small JSON replies wait on delayed ACKs, roughly 40 ms per request
+            if(System.getProperty("sun.net.httpserver.nodelay") == null)
+                System.setProperty("sun.net.httpserver.nodelay", "true");
+            dm.load();
+            new ExamServer().start(port);
+            System.out.println("Exam server listening on port " + port);
+        }
+
+        // One virtual thread per request when the JDK has them (21+), otherwise a bounded platform pool
+        static ExecutorService requestExecutor() {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                int threads = Math.max(64, Runtime.getRuntime().availableProcessors() * 16);
+                return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            }
+        }
+
+        void start(int port) throws IOException {
+            http = com.sun.net.httpserver.HttpServer.create(new java.net.InetSocketAddress(port), 4096);
+            http.setExecutor(requestExecutor());
+            route("/api/login", "POST", this::login);
+            route("/api/quizzes", "GET", this::listQuizzes);
+            route("/api/quiz", "GET", this::fetchQuiz);
+            route("/api/answer", "POST", this::saveAnswer);
+            route("/api/submit", "POST", this::submit);
+            // Attempts still open once the grace period is over are submitted with whatever was saved
+            scheduler.addListener((event, quiz) -> {
+                if(event == QuizScheduler.ENDED)
+                    CompletableFuture.delayedExecutor(SUBMIT_GRACE_MS, TimeUnit.MILLISECONDS).execute(() -> submitOpenAttempts(quiz));
+            });
+            scheduler.start();
+            submitRestoredAttempts();
+            long sweep = Math.min(SESSION_IDLE_MS, 60_000);
+            housekeeping.scheduleWithFixedDelay(this::expireSessions, sweep, sweep, TimeUnit.MILLISECONDS);
+            http.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> http.stop(1)));
+        }
+
+        void route(String path, String method, Route route) {
+            http.createContext(path, ex -> {
+                int status = 200;
+                String body;
+                try {
+                    if(!ex.getRequestMethod().equalsIgnoreCase(method)) throw new HttpError(405, "Use " + method);
+                    body = route.handle(ex, params(ex));
+                } catch (HttpError e) {
+                    status = e.status;
+                    body = "{\"error\":" + json(e.getMessage()) + "}";
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    status = 500;
+                    body = "{\"error\":\"Internal error\"}";
+                }
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                ex.sendResponseHeaders(status, bytes.length);
+                try (OutputStream os = ex.getResponseBody()) {
+                    os.write(bytes);
+                }
+            });
+        }
+
+        // Query string and form body parameters, merged
+        static Map<String, String> params(com.sun.net.httpserver.HttpExchange ex) throws IOException {
+            Map<String, String> params = new HashMap<>();
+            parseForm(ex.getRequestURI().getRawQuery(), params);
+            try (InputStream in = ex.getRequestBody()) {
+                parseForm(new String(in.readAllBytes(), StandardCharsets.UTF_8), params);
+            }
+            return params;
+        }
+
+        static void parseForm(String form, Map<String, String> into) {
+            if(form == null || form.isEmpty()) return;
+            for(String pair : form.split("&")) {
+                int eq = pair.indexOf('=');
+                String k = eq < 0 ? pair : pair.substring(0, eq);
+                String v = eq < 0 ? "" : pair.substring(eq + 1);
+                into.put(java.net.URLDecoder.decode(k, StandardCharsets.UTF_8), java.net.URLDecoder.decode(v, StandardCharsets.UTF_8));
+            }
+        }
+
+        static String required(Map<String, String> params, String name) throws HttpError {
+            String v = params.get(name);
+            if(v == null || v.trim().isEmpty()) throw new HttpError(400, "Missing parameter: " + name);
+            return v.trim();
+        }
+
+        static String json(String s) {
+            if(s == null) return "null";
+            StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+            for(int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch(c) {
+                    case '"': sb.append("\\\""); break;
+                    case '\\': sb.append("\\\\"); break;
+                    case '\n': sb.append("\\n"); break;
+                    case '\r': sb.append("\\r"); break;
+                    case '\t': sb.append("\\t"); break;
+                    default:
+                        if(c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                        else sb.append(c);
+                }
+            }
+            return sb.append('"').toString();
+        }
+
+        Session session(com.sun.net.httpserver.HttpExchange ex) throws HttpError {
+            String auth = ex.getRequestHeaders().getFirst("Authorization");
+            Session s = auth != null && auth.startsWith("Bearer ") ? sessions.get(auth.substring(7).trim()) : null;
+            if(s == null) throw new HttpError(401, "Not logged in");
+            s.lastUsed = System.currentTimeMillis();
+            return s;
+        }
+
+        // Drops idle sessions and closes their attempt journals. What was typed is already on its way to disk,
+        // so logging in again resumes the attempt, and one left open until the deadline is still submitted.
+        void expireSessions() {
+            long cutoff = System.currentTimeMillis() - SESSION_IDLE_MS;
+            for(Map.Entry<String, Session> e : sessions.entrySet()) {
+                Session s = e.getValue();
+                if(s.lastUsed >= cutoff || !sessions.remove(e.getKey(), s)) continue;
+                for(AttemptJournal journal : s.journals.values()) journal.close();
+            }
+        }
+
+        // Same checks as StudentWindow.attemptQuiz
+        Quiz attemptableQuiz(Session s, String id) throws HttpError {
+            Quiz quiz = dm.getQuizById(id);
+            if(quiz == null) quiz = dm.getQuizByShortId(id);
+            if(quiz == null) throw new HttpError(404, "Quiz not found.");
+            Course c = dm.getCourseByCode(quiz.courseCode);
+            if(c == null || !c.isStudentEnrolled(s.student.getUsername())) throw new HttpError(403, "Not enrolled in " + quiz.courseCode);
+            if(dm.getResult(quiz.id, s.student.getUsername()) != null) throw new HttpError(409, "Quiz already attempted.");
+            long now = System.currentTimeMillis();
+            if(now < quiz.startTime.getTime()) throw new HttpError(403, "Quiz not active yet.");
+            if(now > quiz.getEndTime() + SUBMIT_GRACE_MS) throw new HttpError(403, "Quiz time expired.");
+            return quiz;
+        }
+
+        String login(com.sun.net.httpserver.HttpExchange ex, Map<String, String> p) throws Exception {
+            User user = dm.getUserByUsername(required(p, "username"));
+            if(user == null || dm.authenticate(user, p.getOrDefault("password", "")).get() == null)
+                throw new HttpError(401, "Invalid username or password.");
+            if(user.getRole() != User.Role.STUDENT) throw new HttpError(403, "Only students can attempt quizzes.");
+            byte[] bytes = new byte[24];
+            random.nextBytes(bytes);
+            String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+            sessions.put(token, new Session((Student) user));
+            return "{\"token\":" + json(token) + ",\"name\":" + json(user.getName()) + "}";
+        }
+
+        String listQuizzes(com.sun.net.httpserver.HttpExchange ex, Map<String, String> p) throws HttpError {
+            Session s = session(ex);
+            long now = System.currentTimeMillis();
+            StringBuilder sb = new StringBuilder("[");
+            for(Course c : dm.getCoursesForStudent(s.student.getUsername())) {
+                for(Quiz q : dm.getQuizzesEndingAfter(c.courseCode, now)) {
+                    if(sb.length() > 1) sb.append(',');
+                    sb.append("{\"id\":").append(json(q.id))
+                            .append(",\"course\":").append(json(c.courseName))
+                            .append(",\"start\":").append(q.startTime.getTime())
+                            .append(",\"durationMinutes\":").append(q.durationMinutes)
+                            .append(",\"status\":").append(json(now < q.startTime.getTime() ? "Upcoming" : "Active"))
+                            .append(",\"attempted\":").append(dm.getResult(q.id, s.student.getUsername()) != null)
+                            .append('}');
+                }
+            }
+            return sb.append(']').toString();
+        }
+
+        // Questions without their answer keys, plus any answers already saved for this attempt
+        String fetchQuiz(com.sun.net.httpserver.HttpExchange ex, Map<String, String> p) throws HttpError {
+            Session s = session(ex);
+            Quiz quiz = attemptableQuiz(s, required(p, "id"));
+            Map<String, String> answers = attempt(s, quiz);
+            Paper paper = Paper.of(quiz, s.student.getUsername());
+            StringBuilder sb = new StringBuilder("{\"id\":").append(json(quiz.id))
+                    .append(",\"end\":").append(quiz.getEndTime())
+                    .append(",\"questions\":[");
+            // Questions and options in the order of this student's paper
+            for(int i = 0; i < quiz.questions.size(); i++) {
+                int qi = paper.order[i];
+                Question q = quiz.questions.get(qi);
+                if(i > 0) sb.append(',');
+                sb.append("{\"id\":").append(json(q.getId()))
+                        .append(",\"text\":").append(json(q.getText()))
+                        .append(",\"marks\":").append(q.getMarks())
+                        .append(",\"options\":");
+                List<String> opts = q.getOptions();
+                if(opts == null) sb.append("null");
+                else {
+                    sb.append('[');
+                    for(int j = 0; j < opts.size(); j++) sb.append(j > 0 ? "," : "").append(json(opts.get(paper.originalOption(qi, j))));
+                    sb.append(']');
+                }
+                String answer = answers.get(q.getId());
+                if(answer != null && q instanceof MCQQuestion) answer = shownOption(paper, qi, answer);
+                sb.append(",\"answer\":").append(json(answer)).append('}');
+            }
+            return sb.append("]}").toString();
+        }
+
+        // MCQ answers are option indices ("0".."3") as shown on the student's paper, True/False answers "true"/"false"
+        String saveAnswer(com.sun.net.httpserver.HttpExchange ex, Map<String, String> p) throws HttpError {
+            Session s = session(ex);
+            Quiz quiz = attemptableQuiz(s, required(p, "quiz"));
+            String questionId = required(p, "question");
+            int index = 0;
+            while(index < quiz.questions.size() && !quiz.questions.get(index).getId().equals(questionId)) index++;
+            if(index == quiz.questions.size()) throw new HttpError(404, "Question not in quiz.");
+            String answer = p.getOrDefault("answer", "");
+            if(quiz.questions.get(index) instanceof MCQQuestion && !answer.isEmpty()) {
+                Paper paper = Paper.of(quiz, s.student.getUsername());
+                try {
+                    int shown = Integer.parseInt(answer);
+                    if(shown < 0 || shown >= ((MCQQuestion) quiz.questions.get(index)).getOptions().size()) throw new NumberFormatException();
+                    answer = String.valueOf(paper.originalOption(index, shown));
+                } catch(NumberFormatException e) {
+                    throw new HttpError(400, "Bad option index.");
+                }
+            }
+            if(quiz.questions.get(index) instanceof TrueFalseQuestion && !answer.isEmpty()
+                    && quiz.questions.get(index).encodeAnswer(answer) == AnswerSheet.INVALID)
+                throw new HttpError(400, "Bad True/False answer.");
+            attempt(s, quiz).put(questionId, answer);
+            // Gone if a submission for this attempt finished meanwhile
+            AttemptJournal journal = s.journals.get(quiz.id);
+            if(journal != null) journal.put(index, answer);
+            return "{\"saved\":true}";
+        }
+
+        // Saved answers are original option indices; the client sees the shuffled position
+        static String shownOption(Paper paper, int question, String answer) {
+            try {
+                return String.valueOf(paper.shownOption(question, Integer.parseInt(answer)));
+            } catch(NumberFormatException e) {
+                return answer;
+            }
+        }
+
+        // Answers saved so far, picked up from the attempt journal when a session starts or the server restarted
+        Map<String, String> attempt(Session s, Quiz quiz) {
+            AttemptJournal journal = s.journals.computeIfAbsent(quiz.id, k -> AttemptJournal.open(quiz.id, s.student.getUsername()));
+            return s.attempts.computeIfAbsent(quiz.id, k -> journal.answers(quiz));
+        }
+
+        String submit(com.sun.net.httpserver.HttpExchange ex, Map<String, String> p) throws Exception {
+            Session s = session(ex);
+            Quiz quiz = attemptableQuiz(s, required(p, "quiz"));
+            Result result = grade(quiz, s.student, attempt(s, quiz));
+            try {
+                dm.addResult(result).get();
+            } catch (ExecutionException e) {
+                if(!(e.getCause() instanceof IllegalStateException)) throw e;
+                // Submitted already, by a second request or the deadline sweep
+                finish(s, quiz.id);
+                throw new HttpError(409, e.getCause().getMessage());
+            }
+            finish(s, quiz.id);
+            return "{\"marksObtained\":" + result.marksObtained + ",\"totalMarks\":" + quiz.getTotalMarks() + "}";
+        }
+
+        static Result grade(Quiz quiz, Student student, Map<String, String> answers) {
+            Result result = new Result(quiz.id, student.getUsername());
+            result.sheet = AnswerSheet.of(quiz, answers);
+            result.marksObtained = quiz.grade(result.sheet);
+            return result;
+        }
+
+        // Drops an attempt whose result is stored. Whichever caller removes the journal deletes its file, so a
+        // double submit or a submit racing the deadline sweep finds it gone instead of discarding it twice.
+        static void finish(Session s, String quizId) {
+            s.attempts.remove(quizId);
+            AttemptJournal journal = s.journals.remove(quizId);
+            if(journal != null) journal.discard();
+        }
+
+        // Submits what was saved for every attempt of the quiz still open: first those held by a session, then
+        // those only on disk, left by an expired session or by a run of the server that stopped before the deadline
+        void submitOpenAttempts(Quiz quiz) {
+            for(Session s : sessions.values()) {
+                Map<String, String> answers = s.attempts.remove(quiz.id);
+                AttemptJournal journal = s.journals.remove(quiz.id);
+                if(answers == null && journal == null) continue;
+                submitSaved(quiz, s.student, answers != null ? answers : journal.answers(quiz), journal);
+            }
+            Course c = dm.getCourseByCode(quiz.courseCode);
+            if(c == null) return;
+            for(String username : c.enrolledStudents) {
+                if(dm.getResult(quiz.id, username) != null || !AttemptJournal.exists(quiz.id, username)) continue;
+                User u = dm.getUserByUsername(username);
+                if(!(u instanceof Student)) continue;
+                AttemptJournal journal = AttemptJournal.open(quiz.id, username);
+                submitSaved(quiz, (Student) u, journal.answers(quiz), journal);
+            }
+        }
+
+        // A submission that raced this one already holds the result; "already attempted" is expected then, and
+        // the journal is no longer needed either way once a result is stored
+        void submitSaved(Quiz quiz, Student student, Map<String, String> answers, AttemptJournal journal) {
+            dm.addResult(grade(quiz, student, answers)).whenComplete((v, e) -> {
+                if(journal != null && dm.getResult(quiz.id, student.getUsername()) != null) journal.discard();
+            });
+        }
+
+        // Quizzes that ended while the server was down never get an ENDED event, so attempts restored from disk
+        // for them are submitted now, or once the grace period is over. The window overlaps the scheduler's by the
+        // grace period, so a quiz ending during startup may be swept twice; the second pass finds its results stored.
+        void submitRestoredAttempts() {
+            String[] files = AttemptJournal.DIR.list();
+            if(files == null || files.length == 0) return;
+            long now = System.currentTimeMillis();
+            for(Quiz quiz : dm.getQuizzes()) {
+                long end = quiz.getEndTime();
+                if(end > now + SUBMIT_GRACE_MS) continue;
+                CompletableFuture.delayedExecutor(Math.max(0, end + SUBMIT_GRACE_MS - now), TimeUnit.MILLISECONDS)
+                        .execute(() -> submitOpenAttempts(quiz));
+            }
+        }
+    }
+
+    // GUI - Data-layer work for the windows. run() takes it off the EDT onto a small worker pool and then() hands the
+    // outcome back through SwingUtilities.invokeLater: `done` gets the value, a failure becomes a dialog over `owner`.
+    // Handlers read their inputs on the EDT and touch components only in `done`; the `busy` components stay disabled
+    // in between so a command cannot be started twice.
+    static class UiTask {
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread t = new Thread(r, "exam-ui-worker");
+            t.setDaemon(true);
+            return t;
+        });
+
+        static <T> void run(Component owner, String failure, Callable<T> work, java.util.function.Consumer<T> done, JComponent... busy) {
+            run(owner, failure, work, done, null, busy);
+        }
+
+        // `failed`, when given, runs on the EDT after the failure dialog is closed
+        static <T> void run(Component owner, String failure, Callable<T> work, java.util.function.Consumer<T> done, Runnable failed, JComponent... busy) {
+            then(owner, failure, CompletableFuture.supplyAsync(() -> {
+                try {
+                    return work.call();
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, EXECUTOR), done, failed, busy);
+        }
+
+        static <T> void then(Component owner, String failure, CompletableFuture<T> future, java.util.function.Consumer<T> done, JComponent... busy) {
+            then(owner, failure, future, done, null, busy);
+        }
+
+        static <T> void then(Component owner, String failure, CompletableFuture<T> future, java.util.function.Consumer<T> done, Runnable failed, JComponent... busy) {
+            for(JComponent c : busy) c.setEnabled(false);
+            future.whenComplete((value, err) -> SwingUtilities.invokeLater(() -> {
+                for(JComponent c : busy) c.setEnabled(true);
+                if(err == null) {
+                    done.accept(value);
+                    return;
+                }
+                Throwable cause = err;
+                while((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null)
+                    cause = cause.getCause();
+                JOptionPane.showMessageDialog(owner, failure + cause.getMessage());
+                if(failed != null) failed.run();
+            }));
+        }
+    }
+
+    // Logs the EDT's stack when one event has been dispatching for longer than -Dexam.edtStallMs (500 by default).
+    // It replaces the system event queue to note when each dispatch starts; a daemon thread polls that time and
+    // captures the stack while the EDT is still stuck, so the log shows the code at fault, not where it recovered.
+    // A modal dialog pumps events inside the dispatch that opened it, so waiting on one is not counted as a stall.
+    static class EdtWatchdog extends EventQueue implements Runnable {
+        static final long THRESHOLD_MS = Long.getLong("exam.edtStallMs", 500);
+        static final Metrics.Histogram DISPATCH = Metrics.histogram("Ui.dispatch");
+        static final java.util.concurrent.atomic.LongAdder STALLS = Metrics.counter("Ui.stalls");
+
+        volatile long dispatchStart;    // nanoTime of the innermost dispatch in progress, 0 while the EDT waits
+        volatile long reported;         // dispatchStart of the stall last logged
+        volatile Thread edt;
+        long dispatches;                // EDT only
+
+        static void install() {
+            EdtWatchdog watchdog = new EdtWatchdog();
+            Toolkit.getDefaultToolkit().getSystemEventQueue().push(watchdog);
+            Thread t = new Thread(watchdog, "exam-edt-watchdog");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        @Override
+        protected void dispatchEvent(AWTEvent event) {
+            edt = Thread.currentThread();
+            long start = System.nanoTime(), seen = ++dispatches;
+            dispatchStart = start;
+            try {
+                super.dispatchEvent(event);
+            } finally {
+                dispatchStart = 0;
+                // Events that opened a modal loop are left out: their time is mostly spent waiting on the user
+                if(dispatches == seen) DISPATCH.recordSince(start);
+                if(reported == start) System.err.println("EDT stall ended after " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            }
+        }
+
+        @Override
+        public void run() {
+            long period = Math.max(10, THRESHOLD_MS / 4);
+            while(true) {
+                try {
+                    Thread.sleep(period);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long start = dispatchStart;
+                if(start == 0 || start == reported) continue;
+                long ms = (System.nanoTime() - start) / 1_000_000;
+                if(ms < THRESHOLD_MS) continue;
+                reported = start;
+                STALLS.increment();
+                StringBuilder log = new StringBuilder("EDT stalled for " + ms + " ms, still running:");
+                for(StackTraceElement frame : edt.getStackTrace()) log.append("\n\tat ").append(frame);
+                System.err.println(log);
+            }
+        }
+    }
+
+    // GUI - Login frame
+    static class LoginFrame extends JFrame {
+        JTextField txtUsername = new JTextField(10);  // Increased field size
+        JPasswordField txtPassword = new JPasswordField(10);  // Increased field size
+        JComboBox<String> cmbRole = new JComboBox<>(new String[] {"Teacher","Student"});
+        JButton btnLogin = new JButton("Login");
+        JButton btnRegister = new JButton("Register");
+
+        public LoginFrame() {
+            setTitle("Login");
+            setSize(450, 250);  // Increased window size
+            setDefaultCloseOperation(EXIT_ON_CLOSE);
+            setLocationRelativeTo(null);
+            JPanel p = new JPanel(new GridBagLayout());
+            p.setBorder(new EmptyBorder(15,15,15,15));
+            GridBagConstraints gbc = new GridBagConstraints();
+            gbc.insets = new Insets(6,6,6,6);
+            gbc.anchor = GridBagConstraints.WEST;
+
+            gbc.gridx=0; gbc.gridy=0; p.add(new JLabel("Username:"), gbc);
+            gbc.gridx=1; p.add(txtUsername, gbc);
+
+            gbc.gridx=0; gbc.gridy=1; p.add(new JLabel("Password:"), gbc);
+            gbc.gridx=1; p.add(txtPassword, gbc);
+
+            gbc.gridx=0; gbc.gridy=2; p.add(new JLabel("Role:"), gbc);
+            gbc.gridx=1; p.add(cmbRole, gbc);
+
+            gbc.gridx=0; gbc.gridy=3; p.add(btnLogin, gbc);
+            gbc.gridx=1; p.add(btnRegister, gbc);
+
+            add(p);
+
+            btnLogin.addActionListener(e -> login());
+            btnRegister.addActionListener(e -> {
+                dispose();
+                new RegisterFrame();
+            });
+
+            // Reads the snapshot and replays the journal; the buttons come on once the users are in
+            UiTask.run(this, "Could not load data: ", () -> {
+                dm.load();
+                return null;
+            }, v -> { }, btnLogin, btnRegister);
+
+            setVisible(true);
+        }
+
+        void login() {
+            String username = txtUsername.getText().trim();
+            String password = new String(txtPassword.getPassword());
+            String role = (String)cmbRole.getSelectedItem();
+
+            if(username.isEmpty() || password.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "Please enter username and password.");
+                return;
+            }
+
+            User user = dm.getUserByUsername(username);
+            if(user == null) {
+                JOptionPane.showMessageDialog(this, "User not found.");
+                return;
+            }
+
+            // The password check runs on the hashing pool; the rest continues back on the EDT
+            UiTask.then(this, "Login failed: ", dm.authenticate(user, password), ok -> {
+                if(ok == null) JOptionPane.showMessageDialog(this, "Incorrect password.");
+                else loggedIn(user, role);
+            }, btnLogin);
+        }
+
+        void loggedIn(User user, String role) {
+            if(!user.getRole().toString().equalsIgnoreCase(role)) {
+                JOptionPane.showMessageDialog(this, "Role mismatch.");
+                return;
+            }
+
+            JOptionPane.showMessageDialog(this, "Welcome " + user.getName());
+            // Both dashboards list quizzes on the EDT, so those are decoded here. Results stay unloaded until a
+            // window or action that reads them asks, off the EDT.
+            UiTask.run(this, "Could not open the dashboard: ", () -> {
+                dm.materialize(Journal.QUIZ);
+                return null;
+            }, v -> {
+                dispose();
+                if(user.getRole() == User.Role.TEACHER)
+                    new TeacherWindow((Teacher)user);
+                else
+                    new StudentWindow((Student)user);
+            }, btnLogin, btnRegister);
+        }
+    }
+
+    // GUI - Register Frame
+    static class RegisterFrame extends JFrame {
+        JTextField txtName = new JTextField(10);  // Increased field size
+        JTextField txtUsername = new JTextField(10);  // Increased field size
+        JPasswordField txtPassword = new JPasswordField(10);  // Increased field size
+        JComboBox<String> cmbRole = new JComboBox<>(new String[]{"Teacher","Student"});
+        JButton btnRegister = new JButton("Register");
+        JButton btnBack = new JButton("Back");
+
+        public RegisterFrame() {
+            setTitle("Register");
+            setSize(450, 300);  // Increased window size
+            setDefaultCloseOperation(EXIT_ON_CLOSE);
+            setLocationRelativeTo(null);
+            JPanel p = new JPanel(new GridBagLayout());
+            p.setBorder(new EmptyBorder(15,15,15,15));
+            GridBagConstraints gbc = new GridBagConstraints();
+            gbc.insets = new Insets(6,6,6,6);
+            gbc.anchor = GridBagConstraints.WEST;
+
+            gbc.gridx=0; gbc.gridy=0; p.add(new JLabel("Name:"), gbc);
+            gbc.gridx=1; p.add(txtName, gbc);
+
+            gbc.gridx=0; gbc.gridy=1; p.add(new JLabel("Username:"), gbc);
+            gbc.gridx=1; p.add(txtUsername, gbc);
+
+            gbc.gridx=0; gbc.gridy=2; p.add(new JLabel("Password:"), gbc);
+            gbc.gridx=1; p.add(txtPassword, gbc);
+
+            gbc.gridx=0; gbc.gridy=3; p.add(new JLabel("Role:"), gbc);
+            gbc.gridx=1; p.add(cmbRole, gbc);
+
+            gbc.gridy=4; gbc.gridx=0; p.add(btnRegister, gbc);
+            gbc.gridx=1; p.add(btnBack, gbc);
+
+            add(p);
+
+            btnRegister.addActionListener(e -> register());
+            btnBack.addActionListener(e -> {
+                dispose();
+                new LoginFrame();
+            });
+
+            setVisible(true);
+        }
+
+        void register() {
+            String name = txtName.getText().trim();
+            String username = txtUsername.getText().trim();
+            String password = new String(txtPassword.getPassword());
+            String role = (String) cmbRole.getSelectedItem();
+
+            if(name.isEmpty() || username.isEmpty() || password.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "Please fill all fields.");
+                return;
+            }
+            if(dm.usernameExists(username)) {
+                JOptionPane.showMessageDialog(this, "Username already taken.");
+                return;
+            }
+            CompletableFuture<Void> added = CompletableFuture.supplyAsync(() -> Utils.hashPassword(password), Utils.HASH_POOL)
+                    .thenCompose(hash -> dm.addUser(role.equalsIgnoreCase("Teacher")
+                            ? new Teacher(username, name, hash)
+                            : new Student(username, name, hash)));
+            UiTask.then(this, "Registration failed: ", added, v -> {
+                JOptionPane.showMessageDialog(this, "Registration successful. Please login.");
+                dispose();
+                new LoginFrame();
+            }, btnRegister);
+        }
+    }
+
+    // GUI - Teacher Dashboard
+    static class TeacherWindow extends JFrame {
+        Teacher teacher;
+        CourseListModel courseListModel = new CourseListModel();
+        JList<String> courseList = new JList<>(courseListModel);
+        JButton btnAddCourse = new JButton("Add Course");
+        JButton btnManageCourse = new JButton("Manage Course");
+        JButton btnImport = new JButton("Import CSV");
+        JButton btnLogout = new JButton("Logout");
+
+        public TeacherWindow(Teacher teacher) {
+            this.teacher = teacher;
+            setTitle("Teacher Dashboard - " + teacher.getName());
+            setSize(700, 400);
+            setDefaultCloseOperation(EXIT_ON_CLOSE);
+            setLocationRelativeTo(null);
+            setLayout(new BorderLayout(10, 10));
+
+            JPanel leftPanel = new JPanel(new BorderLayout());
+            leftPanel.setBorder(new EmptyBorder(10,10,10,10));
+            leftPanel.add(new JLabel("Courses:"), BorderLayout.NORTH);
+            leftPanel.add(new JScrollPane(courseList), BorderLayout.CENTER);
+
+            JPanel btnPanel = new JPanel();
+            btnPanel.add(btnAddCourse);
+            btnPanel.add(btnManageCourse);
+            btnPanel.add(btnImport);
+            btnPanel.add(btnLogout);
+
+            leftPanel.add(btnPanel, BorderLayout.SOUTH);
+            add(leftPanel, BorderLayout.WEST);
+
+            dm.addListener(courseListModel);
+
+            btnAddCourse.addActionListener(e -> addCourse());
+            btnManageCourse.addActionListener(e -> manageCourse());
+            btnImport.addActionListener(e -> importCsv());
+            btnLogout.addActionListener(e -> {
+                dispose();
+                new LoginFrame();
+            });
+
+            setVisible(true);
+        }
+
+        @Override
+        public void dispose() {
+            dm.removeListener(courseListModel);
+            super.dispose();
+        }
+
+        // Bulk import of users, enrollments or questions from a CSV file, parsed and hashed off the EDT
+        void importCsv() {
+            BulkImporter.Kind[] kinds = BulkImporter.Kind.values();
+            String[] choices = new String[kinds.length];
+            for(int i = 0; i < kinds.length; i++)
+                choices[i] = kinds[i].name().charAt(0) + kinds[i].name().substring(1).toLowerCase(Locale.ROOT)
+                        + " (" + String.join(",", kinds[i].columns) + ")";
+            String selected = (String) JOptionPane.showInputDialog(this, "What does the file contain?",
+                    "Import CSV", JOptionPane.PLAIN_MESSAGE, null, choices, choices[0]);
+            if(selected == null) return;
+            BulkImporter importer = new BulkImporter(kinds[Arrays.asList(choices).indexOf(selected)]);
+
+            JFileChooser chooser = new JFileChooser();
+            chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV (*.csv)", "csv"));
+            if(chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+            File file = chooser.getSelectedFile();
+
+            ProgressMonitor monitor = new ProgressMonitor(this, "Importing " + file.getName(), null, 0, 100);
+            btnImport.setEnabled(false);
+            new SwingWorker<Integer, Void>() {
+                @Override
+                protected Integer doInBackground() throws Exception {
+                    return importer.importFile(file, (done, total) -> SwingUtilities.invokeLater(() -> {
+                        if(monitor.isCanceled()) cancel(false);
+                        else monitor.setProgress(done);
+                    }), this::isCancelled);
+                }
+
+                @Override
+                protected void done() {
+                    monitor.close();
+                    btnImport.setEnabled(true);
+                    if(isCancelled()) return;
+                    try {
+                        StringBuilder msg = new StringBuilder("Imported " + get() + " of " + importer.rows + " rows.");
+                        if(importer.rejected > 0) msg.append("\n").append(importer.rejected).append(" rows were skipped:");
+                        for(String error : importer.errors) msg.append("\n").append(error);
+                        if(importer.rejected > importer.errors.size()) msg.append("\n...");
+                        JTextArea text = new JTextArea(msg.toString(), Math.min(20, importer.errors.size() + 3), 60);
+                        text.setEditable(false);
+                        JOptionPane.showMessageDialog(TeacherWindow.this, new JScrollPane(text), "Import CSV", JOptionPane.INFORMATION_MESSAGE);
+                    } catch (Exception e) {
+                        Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                        JOptionPane.showMessageDialog(TeacherWindow.this, "Import failed: " + cause.getMessage());
+                    }
+                }
+            }.execute();
+        }
+
+        void addCourse(){
+            JTextField codeField = new JTextField(15);
+            JTextField nameField = new JTextField(15);
+            Object[] message = {
+                    "Course Code:", codeField,
+                    "Course Name:", nameField
+            };
+            int option = JOptionPane.showConfirmDialog(this, message, "Add New Course", JOptionPane.OK_CANCEL_OPTION);
+            if(option == JOptionPane.OK_OPTION){
+                String code = codeField.getText().trim();
+                String name = nameField.getText().trim();
+                if(code.isEmpty() || name.isEmpty()){
+                    JOptionPane.showMessageDialog(this, "Please fill all fields");
+                    return;
+                }
+                if(dm.courseCodeExists(code)){
+                    JOptionPane.showMessageDialog(this, "Course code already exists");
+                    return;
+                }
+                UiTask.run(this, "Could not add course: ", () -> dm.addCourse(new Course(code, name)).join(), v -> { }, btnAddCourse);
+            }
+        }
+
+        void manageCourse() {
+            int selected = courseList.getSelectedIndex();
+            if(selected == -1){
+                JOptionPane.showMessageDialog(this, "Please select a course");
+                return;
+            }
+            new ManageCourseWindow(courseListModel.courseAt(selected));
+        }
+    }
+
+    // GUI - Manage Course window
+    static class ManageCourseWindow extends JFrame {
+        Course course;
+        QuestionBankModel questionsModel;
+        JList<String> questionsList = new JList<>();
+        JButton btnAddQuestion = new JButton("Add Question");
+        JButton btnEditQuestion = new JButton("Edit Question");
+        JButton btnCreateQuiz = new JButton("Create Quiz");
+        JButton btnViewSubmissions = new JButton("View Submissions");
+        JButton btnEnrollStudent = new JButton("Enroll Student");
+        JButton btnRegrade = new JButton("Regrade Quiz");
+        JButton btnExport = new JButton("Export Results");
+
+        public ManageCourseWindow(Course course){
+            this.course = course;
+            questionsModel = new QuestionBankModel(course.courseCode);
+            questionsList.setModel(questionsModel);
+            setTitle("Manage Course: " + course.courseCode);
+            setSize(700,400);
+            setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+            setLocationRelativeTo(null);
+            setLayout(new BorderLayout(10, 10));
+
+            JPanel leftPanel = new JPanel(new BorderLayout());
+            leftPanel.setBorder(new EmptyBorder(10,10,10,10));
+            leftPanel.add(new JLabel("Questions"), BorderLayout.NORTH);
+            leftPanel.add(new JScrollPane(questionsList), BorderLayout.CENTER);
+            JPanel questionButtons = new JPanel();
+            questionButtons.add(btnAddQuestion);
+            questionButtons.add(btnEditQuestion);
+            leftPanel.add(questionButtons, BorderLayout.SOUTH);
+
+            JPanel bottomPanel = new JPanel();
+            bottomPanel.add(btnCreateQuiz);
+            bottomPanel.add(btnViewSubmissions);
+            bottomPanel.add(btnEnrollStudent);
+            bottomPanel.add(btnRegrade);
+            bottomPanel.add(btnExport);
+
+            add(leftPanel, BorderLayout.CENTER);
+            add(bottomPanel, BorderLayout.SOUTH);
+
+            dm.addListener(questionsModel);
+
+            btnAddQuestion.addActionListener(e -> addQuestion());
+            btnEditQuestion.addActionListener(e -> editQuestion());
+            btnCreateQuiz.addActionListener(e -> createQuiz());
+            btnViewSubmissions.addActionListener(e -> viewSubmissions());
+            btnEnrollStudent.addActionListener(e -> enrollStudent());
+            btnRegrade.addActionListener(e -> regradeQuiz());
+            btnExport.addActionListener(e -> exportResults());
+
+            setVisible(true);
+        }
+
+        @Override
+        public void dispose() {
+            dm.removeListener(questionsModel);
+            super.dispose();
+        }
+
+        void addQuestion() {
+            String[] types = {"MCQ", "True/False", "Short Answer"};
+            String type = (String) JOptionPane.showInputDialog(this, "Select question type:", "Question Type",
+                    JOptionPane.PLAIN_MESSAGE, null, types, types[0]);
+            if(type == null) return;
+
+            Question q = promptQuestion(type, UUID.randomUUID().toString().substring(0,6), null);
+            if(q == null) return;
+            UiTask.run(this, "Could not add question: ", () -> dm.addQuestion(course.courseCode, q).join(),
+                    v -> JOptionPane.showMessageDialog(this,"Question added!"), btnAddQuestion);
+        }
+
+        // Saves the edit as the question's next version; quizzes already created keep the version they were built with
+        void editQuestion() {
+            int idx = questionsList.getSelectedIndex();
+            if(idx < 0){
+                JOptionPane.showMessageDialog(this,"Select a question to edit.");
+                return;
+            }
+            Question existing = questionsModel.questionAt(idx);
+            String type = existing instanceof MCQQuestion ? "MCQ" : existing instanceof TrueFalseQuestion ? "True/False" : "Short Answer";
+            Question q = promptQuestion(type, existing.id, existing);
+            if(q == null) return;
+            UiTask.run(this, "Could not save question: ", () -> dm.addQuestion(course.courseCode, q).join(),
+                    v -> JOptionPane.showMessageDialog(this,"Question saved as version " + q.version + "."), btnEditQuestion);
+        }
+
+        // Asks for the question's fields, starting from `existing` when editing; null if cancelled or invalid
+        Question promptQuestion(String type, String id, Question existing) {
+            String text = JOptionPane.showInputDialog(this, "Enter question text:", existing == null ? "" : existing.questionText);
+            if(text == null || text.trim().isEmpty()) return null;
+
+            int marks;
+            try{
+                marks = Integer.parseInt(JOptionPane.showInputDialog(this, "Enter marks:", existing == null ? "" : String.valueOf(existing.marks)));
+                if(marks <= 0) throw new Exception();
+            } catch(Exception e){
+                JOptionPane.showMessageDialog(this,"Invalid marks");
+                return null;
+            }
+
+            if(type.equals("MCQ")){
+                // New questions get four options; an edit keeps however many the question has, since imports allow any number from two
+                List<String> current = existing == null ? null : existing.getOptions();
+                int count = current == null ? 4 : current.size();
+                List<String> opts = new ArrayList<>();
+                for(int i=1; i<=count; i++){
+                    String opt = JOptionPane.showInputDialog(this, "Option " + i + ":", current == null ? "" : current.get(i - 1));
+                    if(opt == null || opt.trim().isEmpty()) return null;
+                    opts.add(opt);
+                }
+                int correctIndex;
+                try{
+                    correctIndex = Integer.parseInt(JOptionPane.showInputDialog(this, "Correct option (1-" + count + "):",
+                            existing == null ? "" : String.valueOf(((MCQQuestion) existing).correctIndex + 1))) - 1;
+                    if(correctIndex < 0 || correctIndex >= opts.size()) throw new Exception();
+                } catch(Exception e){
+                    JOptionPane.showMessageDialog(this, "Invalid correct option");
+                    return null;
+                }
+                return new MCQQuestion(id, text, marks, opts, correctIndex);
+            } else if(type.equals("True/False")){
+                String prompt = "Is the correct answer 'True'?";
+                if(existing != null) prompt += " (currently " + (((TrueFalseQuestion) existing).correctAnswer ? "True" : "False") + ")";
+                int ans = JOptionPane.showConfirmDialog(this, prompt, "Correct Answer", JOptionPane.YES_NO_OPTION);
+                if(ans != JOptionPane.YES_OPTION && ans != JOptionPane.NO_OPTION) return null;
+                return new TrueFalseQuestion(id, text, marks, ans == JOptionPane.YES_OPTION);
+            } else {
+                String keywordsStr = JOptionPane.showInputDialog(this, "Enter keywords, comma separated:",
+                        existing == null ? "" : String.join(", ", ((ShortAnswerQuestion) existing).keywords));
+                if(keywordsStr == null || keywordsStr.trim().isEmpty()) return null;
+                List<String> keywords = new ArrayList<>();
+                for(String kw : keywordsStr.split(",")){
+                    kw = kw.trim();
+                    if(!kw.isEmpty()) keywords.add(kw);
+                }
+                if(keywords.isEmpty()){
+                    JOptionPane.showMessageDialog(this, "No valid keywords entered.");
+                    return null;
+                }
+                return new ShortAnswerQuestion(id, text, marks, keywords);
+            }
+        }
+
+        void createQuiz(){
+            List<Question> available = dm.getQuestionBank(course.courseCode);
+            if(available.isEmpty()){
+                JOptionPane.showMessageDialog(this,"Add questions first.");
+                return;
+            }
+            JList<String> questionPicker = new JList<>(available.stream().map(q -> q.id + ": " + q.questionText).toArray(String[]::new));
+            questionPicker.setVisibleRowCount(Math.min(8, available.size()));
+            questionPicker.setSelectionInterval(0, available.size() - 1);
+
+            JSpinner dateSpinner = new JSpinner(new SpinnerDateModel());
+            JSpinner.DateEditor timeEditor = new JSpinner.DateEditor(dateSpinner, "yyyy-MM-dd HH:mm");
+            dateSpinner.setEditor(timeEditor);
+
+            JTextField durField = new JTextField(5);
+            JCheckBox shuffle = new JCheckBox("Shuffle questions and options for each student", true);
+
+            Object[] message = {
+                    "Select Quiz Start Date & Time:", dateSpinner,
+                    "Duration (minutes):", durField,
+                    "Questions:", new JScrollPane(questionPicker),
+                    shuffle
+            };
+            int res = JOptionPane.showConfirmDialog(this, message, "Create Quiz", JOptionPane.OK_CANCEL_OPTION);
+            if(res == JOptionPane.OK_OPTION){
+                Date start = (Date) dateSpinner.getValue();
+                String durStr = durField.getText().trim();
+                int duration;
+                try{
+                    duration = Integer.parseInt(durStr);
+                    if(duration <= 0) throw new Exception();
+                } catch(Exception e){
+                    JOptionPane.showMessageDialog(this, "Invalid duration");
+                    return;
+                }
+                // The quiz refers to the selected questions at their current versions
+                List<Question> questions = new ArrayList<>();
+                for(int i : questionPicker.getSelectedIndices()) questions.add(available.get(i));
+                if(questions.isEmpty()){
+                    JOptionPane.showMessageDialog(this, "Select at least one question.");
+                    return;
+                }
+                Quiz quiz = new Quiz(UUID.randomUUID().toString(), course.courseCode, start, duration, questions);
+                if(shuffle.isSelected()) quiz.shuffleSeed = Utils.RANDOM.nextLong() | 1;
+                UiTask.run(this, "Could not create quiz: ", () -> dm.addQuiz(quiz).join(), v -> {
+                    CompletableFuture.runAsync(() -> Paper.generateAll(quiz, course.enrolledStudents));
+                    JOptionPane.showMessageDialog(this,"Quiz created for " + Utils.formatDate(start));
+                }, btnCreateQuiz);
+            }
+        }
+
+        Quiz chooseQuiz(String prompt, String title) {
+            List<Quiz> quizzes = dm.getQuizzesByCourse(course.courseCode);
+            if(quizzes.isEmpty()){
+                JOptionPane.showMessageDialog(this,"No quizzes found.");
+                return null;
+            }
+            String[] qIds = quizLabels(quizzes);
+            String selected = (String) JOptionPane.showInputDialog(this, prompt,
+                    title, JOptionPane.PLAIN_MESSAGE, null, qIds, qIds[0]);
+            if(selected == null) return null;
+            return quizzes.get(Arrays.asList(qIds).indexOf(selected));
+        }
+
+        // Short IDs, or the full ID of quizzes sharing one, so each label picks out exactly one quiz
+        static String[] quizLabels(List<Quiz> quizzes) {
+            Map<String, Integer> shared = new HashMap<>();
+            for(Quiz q : quizzes) shared.merge(DataManager.shortId(q.id), 1, Integer::sum);
+            String[] labels = new String[quizzes.size()];
+            for(int i = 0; i < labels.length; i++) {
+                String id = quizzes.get(i).id;
+                labels[i] = shared.get(DataManager.shortId(id)) > 1 ? id : DataManager.shortId(id);
+            }
+            return labels;
+        }
+
+        void viewSubmissions() {
+            Quiz quiz = chooseQuiz("Choose quiz to view submissions:", "View Submissions");
+            if(quiz == null) return;
+            new SubmissionsWindow(quiz);
+        }
+
+        // Regrades every submission of a quiz against its current answer key, off the EDT
+        void regradeQuiz() {
+            Quiz quiz = chooseQuiz("Choose quiz to regrade:", "Regrade Quiz");
+            if(quiz == null) return;
+            UiTask.run(this, "Could not read submissions: ", () -> dm.getResultsByQuiz(quiz.id), results -> regradeQuiz(quiz, results), btnRegrade);
+        }
+
+        void regradeQuiz(Quiz quiz, List<Result> results) {
+            if(results.isEmpty()){
+                JOptionPane.showMessageDialog(this,"No submissions yet.");
+                return;
+            }
+            // Edited questions reach a quiz only when the teacher asks for it here, e.g. after fixing an answer key
+            List<Question> latest = dm.latestQuestions(quiz);
+            if(latest != null) {
+                int edited = 0;
+                for(int i = 0; i < latest.size(); i++) if(latest.get(i) != quiz.questions.get(i)) edited++;
+                int choice = JOptionPane.showConfirmDialog(this, edited + " question(s) of this quiz were edited after it was created.\n"
+                        + "Grade against the latest version of each question?", "Regrade Quiz", JOptionPane.YES_NO_CANCEL_OPTION);
+                if(choice == JOptionPane.NO_OPTION) latest = null;
+                else if(choice != JOptionPane.YES_OPTION) return;
+            }
+            List<Question> questions = latest;
+            ProgressMonitor monitor = new ProgressMonitor(this, "Regrading " + results.size() + " submissions", null, 0, results.size());
+            btnRegrade.setEnabled(false);
+            new SwingWorker<RegradeBatch, Void>() {
+                @Override
+                protected RegradeBatch doInBackground() throws Exception {
+                    RegradeBatch batch = Regrader.regrade(quiz, questions == null ? quiz.questions : questions, results,
+                            (done, total) -> SwingUtilities.invokeLater(() -> monitor.setProgress(done)));
+                    if(questions != null) dm.applyRegrade(batch, questions).get();
+                    else if(batch.marks.length > 0) dm.applyRegrade(batch).get();
+                    return batch;
+                }
+
+                @Override
+                protected void done() {
+                    monitor.close();
+                    btnRegrade.setEnabled(true);
+                    try {
+                        JOptionPane.showMessageDialog(ManageCourseWindow.this,
+                                "Regraded " + results.size() + " submissions, " + get().marks.length + " changed.");
+                    } catch (Exception e) {
+                        JOptionPane.showMessageDialog(ManageCourseWindow.this, "Regrade failed: " + e.getMessage());
+                    }
+                }
+            }.execute();
+        }
+
+        // Exports one quiz or the whole course to a .csv or .xlsx file, off the EDT and cancellable
+        void exportResults() {
+            List<Quiz> quizzes = dm.getQuizzesByCourse(course.courseCode);
+            if(quizzes.isEmpty()){
+                JOptionPane.showMessageDialog(this,"No quizzes found.");
+                return;
+            }
+            String[] choices = new String[quizzes.size() + 1];
+            choices[0] = "All quizzes";
+            System.arraycopy(quizLabels(quizzes), 0, choices, 1, quizzes.size());
+            String selected = (String) JOptionPane.showInputDialog(this, "Choose results to export:",
+                    "Export Results", JOptionPane.PLAIN_MESSAGE, null, choices, choices[0]);
+            if(selected == null) return;
+            int index = Arrays.asList(choices).indexOf(selected);
+            List<Quiz> scope = index == 0 ? quizzes : List.of(quizzes.get(index - 1));
+
+            JFileChooser chooser = new JFileChooser();
+            javax.swing.filechooser.FileNameExtensionFilter csv = new javax.swing.filechooser.FileNameExtensionFilter("CSV (*.csv)", "csv");
+            chooser.addChoosableFileFilter(csv);
+            chooser.addChoosableFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Excel workbook (*.xlsx)", "xlsx"));
+            chooser.setFileFilter(csv);
+            chooser.setSelectedFile(new File(course.courseCode + "-results.csv"));
+            if(chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+            File file = chooser.getSelectedFile();
+            String name = file.getName().toLowerCase(Locale.ROOT);
+            if(!name.endsWith(".csv") && !name.endsWith(".xlsx")) {
+                String ext = ((javax.swing.filechooser.FileNameExtensionFilter) chooser.getFileFilter()).getExtensions()[0];
+                file = new File(file.getPath() + "." + ext);
+            }
+
+            ResultExporter exporter = new ResultExporter(scope, file);
+            ProgressMonitor monitor = new ProgressMonitor(this, "Exporting results to " + file.getName(), null, 0, 100);
+            btnExport.setEnabled(false);
+            SwingWorker<Integer, Void> worker = new SwingWorker<Integer, Void>() {
+                @Override
+                protected Integer doInBackground() throws Exception {
+                    return exporter.export((done, total) -> SwingUtilities.invokeLater(() -> {
+                        if(monitor.isCanceled()) cancel(false);
+                        else monitor.setProgress((int) (100L * done / total));
+                    }), this::isCancelled);
+                }
+
+                @Override
+                protected void done() {
+                    monitor.close();
+                    btnExport.setEnabled(true);
+                    if(isCancelled()) return;
+                    try {
+                        JOptionPane.showMessageDialog(ManageCourseWindow.this, "Exported " + get() + " results to " + exporter.target);
+                    } catch (Exception e) {
+                        JOptionPane.showMessageDialog(ManageCourseWindow.this, "Export failed: " + e.getMessage());
+                    }
+                }
+            };
+            worker.execute();
+        }
+
+        void enrollStudent() {
+            String username = JOptionPane.showInputDialog(this, "Enter student username to enroll:");
+            if(username == null || username.trim().isEmpty()) return;
+
+            User student = dm.getUserByUsername(username.trim());
+            if(student == null) {
+                JOptionPane.showMessageDialog(this, "Student not found.");
+                return;
+            }
+
+            // Lookups ignore case; the enrollment is stored under the username as registered
+            UiTask.run(this, "Could not enroll student: ", () -> dm.enrollStudent(course, student.getUsername()).join(),
+                    v -> JOptionPane.showMessageDialog(this, "Student enrolled successfully."), btnEnrollStudent);
+        }
+    }
+
+    // GUI - Submissions of one quiz. Rows load off the EDT and show a page at a time; clicking a column header sorts
+    // through row orders computed once per load from primitive keys, so re-sorting never compares strings again.
+    static class SubmissionsWindow extends JFrame {
+        private static final long serialVersionUID = 1L;
+        static final int PAGE_SIZE = 200;
+        static final String[] COLUMNS = {"Student", "Marks"};
+
+        final Quiz quiz;
+        List<Result> results = Collections.emptyList();
+        int[] byName = new int[0], byMarks = new int[0];
+        int sortColumn = 0, page = 0;
+        boolean descending;
+
+        final SubmissionsTableModel model = new SubmissionsTableModel();
+        final JTable table = new JTable(model);
+        final JLabel lblStats = new JLabel("Loading submissions...");
+        final JLabel lblPage = new JLabel();
+        final JButton btnPrev = new JButton("< Prev");
+        final JButton btnNext = new JButton("Next >");
+        final JButton btnRefresh = new JButton("Refresh");
+        final ItemTableModel itemModel = new ItemTableModel();
+        final HistogramPanel histogram = new HistogramPanel();
+
+        class SubmissionsTableModel extends AbstractTableModel {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public int getRowCount() { return Math.max(0, Math.min(PAGE_SIZE, results.size() - page * PAGE_SIZE)); }
+
+            @Override
+            public int getColumnCount() { return COLUMNS.length; }
+
+            @Override
+            public String getColumnName(int column) {
+                return column == sortColumn ? COLUMNS[column] + (descending ? " \u25BC" : " \u25B2") : COLUMNS[column];
+            }
+
+            @Override
+            public Class<?> getColumnClass(int column) { return column == 1 ? Integer.class : String.class; }
+
+            @Override
+            public Object getValueAt(int row, int column) {
+                Result r = results.get(resultAt(page * PAGE_SIZE + row));
+                return column == 0 ? r.studentUsername : (Object) r.marksObtained;
+            }
+        }
+
+        // One row per question, built from a QuizStats copy
+        class ItemTableModel extends AbstractTableModel {
+            private static final long serialVersionUID = 1L;
+            final String[] columns = {"#", "Question", "Difficulty", "Discrimination", "Answers"};
+            QuizStats stats = new QuizStats();
+
+            @Override
+            public int getRowCount() { return Math.min(quiz.questions.size(), stats.items.length); }
+
+            @Override
+            public int getColumnCount() { return columns.length; }
+
+            @Override
+            public String getColumnName(int column) { return columns[column]; }
+
+            @Override
+            public Object getValueAt(int row, int column) {
+                Question q = quiz.questions.get(row);
+                switch(column) {
+                    case 0: return row + 1;
+                    case 1: return q.getText();
+                    case 2: return format(stats.difficulty(row, q.getMarks()));
+                    case 3: return format(stats.discrimination(row));
+                    default: return answers(q, stats.items[row]);
+                }
+            }
+
+            String format(double v) { return Double.isNaN(v) ? "-" : String.format("%.2f", v); }
+
+            String answers(Question q, QuizStats.ItemStats item) {
+                if(q instanceof ShortAnswerQuestion) return "";
+                StringBuilder sb = new StringBuilder();
+                for(int c = 0; c < item.choices.length; c++)
+                    if(item.choices[c] > 0) sb.append(q.choiceLabel((byte) c)).append(": ").append(item.choices[c]).append("   ");
+                if(item.unanswered > 0) sb.append("none: ").append(item.unanswered);
+                return sb.toString().trim();
+            }
+        }
+
+        // Results per mark obtained, from 0 to the quiz total
+        class HistogramPanel extends JComponent {
+            private static final long serialVersionUID = 1L;
+            int[] counts = new int[0];
+
+            HistogramPanel() { setPreferredSize(new Dimension(400, 140)); }
+
+            @Override
+            protected void paintComponent(Graphics g) {
+                int bins = Math.max(counts.length, quiz.getTotalMarks() + 1), peak = 1;
+                for(int c : counts) peak = Math.max(peak, c);
+                int w = getWidth() - 20, h = getHeight() - 30;
+                g.setColor(getForeground());
+                g.drawLine(10, h + 5, 10 + w, h + 5);
+                for(int i = 0; i < bins; i++) {
+                    int x = 10 + i * w / bins, bw = Math.max(1, w / bins - 1);
+                    int count = i < counts.length ? counts[i] : 0, bh = count * h / peak;
+                    g.setColor(new Color(70, 120, 190));
+                    g.fillRect(x, h + 5 - bh, bw, bh);
+                    g.setColor(getForeground());
+                    if(bins <= 20 || i % (bins / 10) == 0) g.drawString(String.valueOf(i), x, h + 20);
+                }
+            }
+        }
+
+        SubmissionsWindow(Quiz quiz) {
+            this.quiz = quiz;
+            setTitle("Submissions: " + quiz.id.substring(0,6));
+            setSize(700, 550);
+            setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+            setLocationRelativeTo(null);
+            setLayout(new BorderLayout(10, 10));
+
+            lblStats.setBorder(new EmptyBorder(10,10,0,10));
+            add(lblStats, BorderLayout.NORTH);
+            JPanel analysis = new JPanel(new BorderLayout());
+            analysis.add(histogram, BorderLayout.NORTH);
+            analysis.add(new JScrollPane(new JTable(itemModel)), BorderLayout.CENTER);
+            JTabbedPane tabs = new JTabbedPane();
+            tabs.addTab("Submissions", new JScrollPane(table));
+            tabs.addTab("Item Analysis", analysis);
+            add(tabs, BorderLayout.CENTER);
+            JPanel pager = new JPanel();
+            pager.add(btnPrev);
+            pager.add(lblPage);
+            pager.add(btnNext);
+            pager.add(btnRefresh);
+            add(pager, BorderLayout.SOUTH);
+
+            table.getTableHeader().setReorderingAllowed(false);
+            table.getTableHeader().addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    int column = table.columnAtPoint(e.getPoint());
+                    if(column >= 0) sortBy(table.convertColumnIndexToModel(column));
+                }
+            });
+            btnPrev.addActionListener(e -> showPage(page - 1));
+            btnNext.addActionListener(e -> showPage(page + 1));
+            btnRefresh.addActionListener(e -> load());
+
+            load();
+            setVisible(true);
+        }
+
+        void load() {
+            btnRefresh.setEnabled(false);
+            new SwingWorker<Object[], Void>() {
+                @Override
+                protected Object[] doInBackground() {
+                    List<Result> loaded = dm.getResultsByQuiz(quiz.id);
+                    int n = loaded.size();
+                    // Usernames are ranked once; both orders are then plain long sorts of (key << 32 | row)
+                    String[] names = new String[n];
+                    for(int i = 0; i < n; i++) names[i] = loaded.get(i).studentUsername;
+                    String[] sorted = names.clone();
+                    Arrays.sort(sorted, String.CASE_INSENSITIVE_ORDER);
+                    long[] nameKeys = new long[n], markKeys = new long[n];
+                    for(int i = 0; i < n; i++) {
+                        nameKeys[i] = (long) Arrays.binarySearch(sorted, names[i], String.CASE_INSENSITIVE_ORDER) << 32 | i;
+                        markKeys[i] = (long) loaded.get(i).marksObtained << 32 | i;
+                    }
+                    return new Object[]{loaded, order(nameKeys), order(markKeys), dm.getQuizStats(quiz.id)};
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                protected void done() {
+                    btnRefresh.setEnabled(true);
+                    Object[] loaded;
+                    try {
+                        loaded = get();
+                    } catch (Exception e) {
+                        lblStats.setText("Could not load submissions: " + e.getMessage());
+                        return;
+                    }
+                    results = (List<Result>) loaded[0];
+                    byName = (int[]) loaded[1];
+                    byMarks = (int[]) loaded[2];
+                    QuizStats stats = (QuizStats) loaded[3];
+                    lblStats.setText(stats.count == 0 ? "No submissions yet." : String.format(
+                            "%d submissions   mean %.1f   sd %.1f   min %d   max %d   out of %d",
+                            stats.count, stats.mean(), stats.stdDev(), stats.min, stats.max, quiz.getTotalMarks()));
+                    itemModel.stats = stats;
+                    itemModel.fireTableDataChanged();
+                    histogram.counts = stats.histogram;
+                    histogram.repaint();
+                    showPage(Math.min(page, pageCount() - 1));
+                }
+            }.execute();
+        }
+
+        static int[] order(long[] keys) {
+            Arrays.sort(keys);
+            int[] order = new int[keys.length];
+            for(int i = 0; i < keys.length; i++) order[i] = (int) keys[i];
+            return order;
+        }
+
+        int resultAt(int position) {
+            int[] order = sortColumn == 0 ? byName : byMarks;
+            return descending ? order[order.length - 1 - position] : order[position];
+        }
+
+        int pageCount() {
+            return Math.max(1, (results.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+        }
+
+        void sortBy(int column) {
+            descending = column == sortColumn && !descending;
+            sortColumn = column;
+            model.fireTableStructureChanged();
+            showPage(0);
+        }
+
+        void showPage(int p) {
+            page = Math.max(0, Math.min(p, pageCount() - 1));
+            model.fireTableDataChanged();
+            int from = results.isEmpty() ? 0 : page * PAGE_SIZE + 1;
+            lblPage.setText(from + "-" + (page * PAGE_SIZE + model.getRowCount()) + " of " + results.size());
+            btnPrev.setEnabled(page > 0);
+            btnNext.setEnabled(page < pageCount() - 1);
+        }
+    }
+
+    static class StudentWindow extends JFrame {
+        Student student;
+        StudentQuizTableModel quizTableModel;
+        JTable quizTable = new JTable();
+
+        JButton btnAttempt = new JButton("Attempt Quiz");
+        JButton btnViewResult = new JButton("View Result");
+        JButton btnLogout = new JButton("Logout");
+
+        public StudentWindow(Student student) {
+            this.student = student;
+            quizTableModel = new StudentQuizTableModel(student.getUsername());
+            quizTable.setModel(quizTableModel);
+            setTitle("Student Dashboard - " + student.getName());
+            setSize(750, 400);
+            setLocationRelativeTo(null);
+            setDefaultCloseOperation(EXIT_ON_CLOSE);
+            setLayout(new BorderLayout(10,10));
+            add(new JLabel("Available Quizzes"), BorderLayout.NORTH);
+            add(new JScrollPane(quizTable), BorderLayout.CENTER);
+            JPanel btnPanel = new JPanel();
+            btnPanel.add(btnAttempt);
+            btnPanel.add(btnViewResult);
+            btnPanel.add(btnLogout);
+            add(btnPanel, BorderLayout.SOUTH);
+
+            dm.addListener(quizTableModel);
+            scheduler.addListener(quizTableModel);
+            scheduler.start();
+
+            btnAttempt.addActionListener(e -> attemptQuiz());
+            btnViewResult.addActionListener(e -> viewResult());
+            btnLogout.addActionListener(e -> {
+                dispose();
+                new LoginFrame();
+            });
+
+            quizTable.getSelectionModel().addListSelectionListener((ListSelectionEvent e) -> {
+                boolean selected = quizTable.getSelectedRow() != -1;
+                btnAttempt.setEnabled(selected);
+                btnViewResult.setEnabled(selected);
+            });
+
+            setVisible(true);
+        }
+
+        // Drops quizzes that have ended since the last reload
+        void refreshQuizTable() {
+            quizTableModel.reload();
+        }
+
+        @Override
+        public void dispose() {
+            dm.removeListener(quizTableModel);
+            scheduler.removeListener(quizTableModel);
+            super.dispose();
+        }
+
+        void attemptQuiz() {
+            int selected = quizTable.getSelectedRow();
+            if(selected == -1) return;
+            Quiz quiz = quizTableModel.quizAt(quizTable.convertRowIndexToModel(selected));
+            // The first lookup decodes the stored results, so it runs off the EDT
+            UiTask.run(this, "Could not open the quiz: ", () -> dm.getResult(quiz.id, student.getUsername()), res -> attemptQuiz(quiz, res), btnAttempt);
+        }
+
+        void attemptQuiz(Quiz quiz, Result previous) {
+            if(previous != null) {
+                JOptionPane.showMessageDialog(this,"Quiz already attempted.");
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            long start = quiz.startTime.getTime();
+            long end = start + quiz.durationMinutes * 60 * 1000L;
+            if(now < start) {
+                JOptionPane.showMessageDialog(this,"Quiz not active yet.");
+                return;
+            }
+            if(now > end) {
+                JOptionPane.showMessageDialog(this,"Quiz time expired.");
+                return;
+            }
+            // Saved answers are read back from disk before the frame opens
+            UiTask.run(this, "Could not open the quiz: ", () -> AttemptJournal.open(quiz.id, student.getUsername()), attempt -> {
+                new QuizAttemptFrame(student, quiz, this, attempt);
+                setVisible(false);
+            }, btnAttempt);
+        }
+
+        void viewResult() {
+            int selected = quizTable.getSelectedRow();
+            if(selected == -1) return;
+            Quiz quiz = quizTableModel.quizAt(quizTable.convertRowIndexToModel(selected));
+            UiTask.run(this, "Could not read the result: ", () -> dm.getResult(quiz.id, student.getUsername()), res -> {
+                if(res == null) {
+                    JOptionPane.showMessageDialog(this,"Quiz not attempted yet.");
+                    return;
+                }
+                JOptionPane.showMessageDialog(this, "Your score: "+ res.marksObtained + "/" + quiz.getTotalMarks());
+            }, btnViewResult);
+        }
+    }
+
+    static class QuizAttemptFrame extends JFrame implements QuizScheduler.Listener {
+        Student student;
+        Quiz quiz;
+        Result result;
+        int currentIndex;   // position on this student's paper
+        List<Question> questions;
+        Paper paper;
+        Map<String, String> answers = new HashMap<>();
+
+        JLabel lblQuestion = new JLabel();
+        JPanel panelOptions = new JPanel();
+        JButton btnPrev = new JButton("Previous");
+        JButton btnNext = new JButton("Next");
+        JButton btnSubmit = new JButton("Submit");
+        JLabel lblTimeLeft = new JLabel();
+        javax.swing.Timer countdown, typing;
+        AttemptJournal attempt;
+        boolean submitted;
+
+        ButtonGroup bg = new ButtonGroup();  // Initialize here
+        List<JRadioButton> optionButtons;
+        JTextArea shortAnswerArea;
+        StudentWindow parent;
+
+        public QuizAttemptFrame(Student student, Quiz quiz, StudentWindow parent, AttemptJournal attempt) {
+            super("Quiz: "+ quiz.courseCode);
+            this.student = student;
+            this.quiz = quiz;
+            this.questions = quiz.questions;
+            this.paper = Paper.of(quiz, student.getUsername());
+            this.parent = parent;
+            this.result = new Result(quiz.id, student.getUsername());
+            this.attempt = attempt;
+            answers.putAll(attempt.answers(quiz));
+
+            setSize(600,400);
+            setLocationRelativeTo(null);
+            setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+            setLayout(new BorderLayout(10,10));
+
+            lblQuestion.setFont(new Font("Arial", Font.BOLD, 16));
+            add(lblQuestion, BorderLayout.NORTH);
+
+            panelOptions.setLayout(new BoxLayout(panelOptions, BoxLayout.Y_AXIS));
+            add(new JScrollPane(panelOptions), BorderLayout.CENTER);
+
+            JPanel btnPanel = new JPanel();
+            btnPanel.add(btnPrev);
+            btnPanel.add(btnNext);
+            btnPanel.add(btnSubmit);
+            btnPanel.add(lblTimeLeft);
+            add(btnPanel, BorderLayout.SOUTH);
+
+            btnPrev.addActionListener(e -> showQuestion(currentIndex - 1));
+            btnNext.addActionListener(e -> showQuestion(currentIndex + 1));
+            btnSubmit.addActionListener(e -> submit());
+
+            // The scheduler submits at the deadline; the countdown only repaints the label
+            scheduler.addListener(this);
+            scheduler.start();
+            countdown = new javax.swing.Timer(1000, e -> showTimeLeft());
+            countdown.start();
+            showTimeLeft();
+
+            showQuestion(0);
+            setVisible(true);
+            // The quiz may have closed while the frame was opening, before the listener was registered
+            if(System.currentTimeMillis() >= quiz.getEndTime()) SwingUtilities.invokeLater(this::timeUp);
+            else if(!answers.isEmpty()) JOptionPane.showMessageDialog(this, "Your earlier answers to this quiz were restored.");
+        }
+
+        void showTimeLeft() {
+            long seconds = Math.max(0, (quiz.getEndTime() - System.currentTimeMillis() + 999) / 1000);
+            lblTimeLeft.setText(String.format("Time left: %d:%02d", seconds / 60, seconds % 60));
+        }
+
+        @Override
+        public void quizEvent(int event, Quiz quiz) {
+            if(event == QuizScheduler.ENDED && quiz.id.equals(this.quiz.id)) SwingUtilities.invokeLater(this::timeUp);
+        }
+
+        void timeUp() {
+            if(submitted) return;
+            JOptionPane.showMessageDialog(this, "Time is up. Your answers are being submitted.");
+            submit();
+        }
+
+        @Override
+        public void dispose() {
+            scheduler.removeListener(this);
+            if(countdown != null) countdown.stop();
+            if(typing != null) typing.stop();
+            super.dispose();
+        }
+
+        void showQuestion(int idx) {
+            if(idx < 0 || idx >= questions.size()) return;
+            saveAnswer();
+            currentIndex = idx;
+            int qi = paper.order[idx];
+            Question q = questions.get(qi);
+            lblQuestion.setText("Q"+ (idx+1) + ": "+ q.questionText);
+            panelOptions.removeAll();
+
+            List<String> opts = q.getOptions();
+            bg.clearSelection(); // Clear existing buttons
+            optionButtons = new ArrayList<>();
+            shortAnswerArea = null;
+
+            if(opts != null){
+                // Shown in the paper's order; the action command stays the original option index
+                for(int i=0; i<opts.size(); i++){
+                    int option = paper.originalOption(qi, i);
+                    JRadioButton rb = new JRadioButton(opts.get(option));
+                    rb.setActionCommand(String.valueOf(option));
+                    bg.add(rb);
+                    rb.addActionListener(e -> saveAnswer());
+                    optionButtons.add(rb);
+                    panelOptions.add(rb);
+                }
+                String saved = answers.get(q.getId());
+                if(saved != null){
+                    for(JRadioButton b : optionButtons) if(b.getActionCommand().equals(saved)) b.setSelected(true);
+                }
+            } else {
+                shortAnswerArea = new JTextArea(5, 50);
+                if(answers.get(q.getId()) != null) shortAnswerArea.setText(answers.get(q.getId()));
+                panelOptions.add(new JScrollPane(shortAnswerArea));
+                // Typing only arms a timer; the text is copied out at most once per debounce window
+                if(typing == null) {
+                    typing = new javax.swing.Timer((int) AttemptJournal.DEBOUNCE_MS, e -> saveAnswer());
+                    typing.setRepeats(false);
+                }
+                shortAnswerArea.getDocument().addDocumentListener(new javax.swing.event.DocumentListener(){
+                    public void insertUpdate(javax.swing.event.DocumentEvent e) { typed(); }
+                    public void removeUpdate(javax.swing.event.DocumentEvent e) { typed(); }
+                    public void changedUpdate(javax.swing.event.DocumentEvent e) { typed(); }
+                });
+            }
+
+            panelOptions.revalidate();
+            panelOptions.repaint();
+
+            btnPrev.setEnabled(idx > 0);
+            btnNext.setEnabled(idx < questions.size()-1);
+        }
+
+        void typed() {
+            if(!typing.isRunning()) typing.start();
+        }
+
+        void saveAnswer(){
+            if(currentIndex < 0 || currentIndex >= questions.size()) return;
+            Question q = questions.get(paper.order[currentIndex]);
+            String answer = null;
+            if(q.getOptions() != null){
+                if(bg.getSelection() != null) answer = bg.getSelection().getActionCommand();
+            } else {
+                if(shortAnswerArea != null) answer = shortAnswerArea.getText();
+            }
+            if(answer == null || answer.equals(answers.get(q.getId()))) return;
+            answers.put(q.getId(), answer);
+            attempt.put(paper.order[currentIndex], answer);
+        }
+
+        // From pressing Submit, or the timer running out, until the graded result is stored
+        static final Metrics.Histogram SUBMIT = Metrics.histogram("QuizAttempt.submit");
+
+        void submit(){
+            if(submitted) return;
+            submitted = true;
+            long start = System.nanoTime();
+            saveAnswer();
+            int total = quiz.getTotalMarks();
+            result.sheet = AnswerSheet.of(quiz, answers);
+            // Graded and stored off the EDT. If storing fails the journal keeps the answers, so the next attempt restores them.
+            UiTask.run(this, "Your submission could not be saved: ", () -> {
+                result.marksObtained = quiz.grade(result.sheet);
+                try {
+                    dm.addResult(result).join();
+                } finally {
+                    SUBMIT.recordSince(start);
+                }
+                attempt.discard();
+                return result.marksObtained;
+            }, obtained -> {
+                JOptionPane.showMessageDialog(this, "Quiz submitted!\nYour Score: " + obtained + "/" + total);
+                close();
+            }, this::close, btnPrev, btnNext, btnSubmit);
+        }
+
+        void close() {
+            parent.refreshQuizTable();
+            parent.setVisible(true);
+            dispose();
+        }
+    }}
\ No newline at end of file
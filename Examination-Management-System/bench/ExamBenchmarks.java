@@ -0,0 +1,330 @@
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Micro-benchmarks for the exam engine over a seeded synthetic dataset.
+ *
+ * Run from the repository root, which builds both and starts the harness in an empty build/bench-run,
+ * since DataManager reads and writes examdata.bin and examdata.journal in the working directory:
+ *
+ *   gradle bench -Pbench='--scale medium --filter grade'
+ *
+ * Without Gradle, compile next to ExamSystem.java and run from an empty directory:
+ *
+ *   javac -d /tmp/exam-bench ExamSystem.java bench/ExamBenchmarks.java
+ *   mkdir -p /tmp/exam-run && cd /tmp/exam-run
+ *   java -cp /tmp/exam-bench ExamBenchmarks --scale medium --filter grade
+ *
+ * Options: --scale small|medium|large, --seed N, --filter REGEX, --warmup N, --iterations N, --millis N.
+ */
+class ExamBenchmarks {
+    interface Op { Object run(int i) throws Exception; }
+
+    // Every benchmark result is folded in here so the JIT cannot drop the work
+    static volatile int sink;
+
+    final int warmup, iterations;
+    final long iterationNanos;
+    final Pattern filter;
+
+    ExamBenchmarks(int warmup, int iterations, long iterationMillis, Pattern filter) {
+        this.warmup = warmup;
+        this.iterations = iterations;
+        this.iterationNanos = TimeUnit.MILLISECONDS.toNanos(iterationMillis);
+        this.filter = filter;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String scale = "medium", filter = ".*";
+        long seed = 42;
+        int warmup = 3, iterations = 5, millis = 500;
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "--scale": scale = args[++i]; break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--filter": filter = args[++i]; break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+                case "--millis": millis = Integer.parseInt(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if(new File("examdata.bin").exists() || new File("examdata.journal").exists())
+            throw new IllegalStateException("Run from an empty directory; refusing to overwrite exam data in " + new File("").getAbsolutePath());
+
+        Dataset.Shape shape = Dataset.Shape.of(scale);
+        long t0 = System.nanoTime();
+        Dataset data = new Dataset(shape, seed).generate();
+        System.out.printf("dataset %s (seed %d): %d users, %d courses, %d quizzes, %d results, generated in %d ms%n",
+                scale, seed, data.students.size() + data.teachers.size(), data.courses.size(), data.quizzes.size(),
+                data.resultCount, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0));
+        System.out.printf("%-32s %14s %12s%n", "benchmark", "ns/op", "+/-");
+        new ExamBenchmarks(warmup, iterations, millis, Pattern.compile(filter)).runAll(data);
+    }
+
+    void runAll(Dataset d) throws Exception {
+        ExamSystem.DataManager dm = d.dm;
+
+        // Persistence at dataset size; load() is lazy, so the full decode is measured separately
+        bench("persistence.save", i -> { dm.save().join(); return null; });
+        bench("persistence.load", i -> { dm.load(); return null; });
+        bench("persistence.loadAll", i -> { dm.load(); dm.materializeAll(); return null; });
+        dm.load();
+        dm.materializeAll();
+
+        // Lookups, cycling through keys that exist
+        String[] usernames = d.students.stream().map(ExamSystem.User::getUsername).toArray(String[]::new);
+        String[] courseCodes = d.courses.stream().map(c -> c.courseCode).toArray(String[]::new);
+        String[] quizIds = d.quizzes.stream().map(q -> q.id).toArray(String[]::new);
+        String[][] attempted = d.attempted.toArray(new String[0][]);
+        long now = d.now;
+        bench("lookup.getUserByUsername", i -> dm.getUserByUsername(usernames[i % usernames.length]));
+        bench("lookup.usernameExists", i -> dm.usernameExists(usernames[i % usernames.length]));
+        bench("lookup.courseCodeExists", i -> dm.courseCodeExists(courseCodes[i % courseCodes.length]));
+        bench("lookup.getCourseByCode", i -> dm.getCourseByCode(courseCodes[i % courseCodes.length]));
+        bench("lookup.getCoursesForStudent", i -> dm.getCoursesForStudent(usernames[i % usernames.length]));
+        bench("lookup.getQuizzesByCourse", i -> dm.getQuizzesByCourse(courseCodes[i % courseCodes.length]));
+        bench("lookup.getQuizzesEndingAfter", i -> dm.getQuizzesEndingAfter(courseCodes[i % courseCodes.length], now));
+        bench("lookup.getQuizById", i -> dm.getQuizById(quizIds[i % quizIds.length]));
+        bench("lookup.getQuizByShortId", i -> dm.getQuizByShortId(ExamSystem.DataManager.shortId(quizIds[i % quizIds.length])));
+        bench("lookup.getResult", i -> dm.getResult(attempted[i % attempted.length][0], attempted[i % attempted.length][1]));
+        bench("lookup.getResultsByQuiz", i -> dm.getResultsByQuiz(quizIds[i % quizIds.length]));
+
+        // Grading, one question type at a time, over pre-generated answers
+        ExamSystem.Quiz quiz = d.quizzes.get(0);
+        for(Class<?> type : new Class<?>[]{ExamSystem.MCQQuestion.class, ExamSystem.TrueFalseQuestion.class, ExamSystem.ShortAnswerQuestion.class}) {
+            List<ExamSystem.Question> questions = new ArrayList<>();
+            for(ExamSystem.Question q : quiz.questions) if(type.isInstance(q)) questions.add(q);
+            if(questions.isEmpty()) continue;
+            String[] answers = new String[1024];
+            Random rnd = new Random(d.seed);
+            for(int i = 0; i < answers.length; i++) answers[i] = d.answer(questions.get(i % questions.size()), rnd);
+            bench("grade." + type.getSimpleName(), i -> questions.get(i % questions.size()).gradeAnswer(answers[i & 1023]));
+        }
+
+        // Keyword counting alone: the matcher against the per-keyword toLowerCase().contains() it replaced
+        List<ExamSystem.ShortAnswerQuestion> shortAnswers = new ArrayList<>();
+        for(ExamSystem.Quiz q : d.quizzes)
+            for(ExamSystem.Question question : q.questions)
+                if(question instanceof ExamSystem.ShortAnswerQuestion && shortAnswers.size() < 64) shortAnswers.add((ExamSystem.ShortAnswerQuestion) question);
+        if(!shortAnswers.isEmpty()) {
+            ExamSystem.KeywordMatcher[] matchers = new ExamSystem.KeywordMatcher[shortAnswers.size()];
+            for(int i = 0; i < matchers.length; i++) matchers[i] = new ExamSystem.KeywordMatcher(shortAnswers.get(i).keywords);
+            String[] texts = new String[1024];
+            Random rnd = new Random(d.seed);
+            for(int i = 0; i < texts.length; i++) texts[i] = d.answer(shortAnswers.get(i % shortAnswers.size()), rnd);
+            bench("keywords.contains", i -> {
+                String lower = texts[i & 1023].toLowerCase();
+                int found = 0;
+                for(String kw : shortAnswers.get(i % shortAnswers.size()).keywords) if(lower.contains(kw.toLowerCase())) found++;
+                return found;
+            });
+            bench("keywords.matcher", i -> matchers[i % matchers.length].countFound(texts[i & 1023]));
+        }
+
+        // What QuizAttemptFrame.submit does before handing the result to DataManager
+        List<Map<String, String>> sheets = new ArrayList<>();
+        Random rnd = new Random(d.seed);
+        for(int i = 0; i < 256; i++) sheets.add(d.answers(quiz, rnd));
+        bench("submit.encodeAndGrade", i -> quiz.grade(ExamSystem.AnswerSheet.of(quiz, sheets.get(i & 255))));
+
+        // What StudentWindow.refreshQuizTable does, minus the table model
+        bench("student.refreshQuizFilter", i -> {
+            int rows = 0;
+            for(ExamSystem.Course c : dm.getCoursesForStudent(usernames[i % usernames.length]))
+                rows += dm.getQuizzesEndingAfter(c.courseCode, now).size();
+            return rows;
+        });
+    }
+
+    // Runs op in a loop for a fixed time per iteration and reports the mean and spread of ns/op
+    void bench(String name, Op op) throws Exception {
+        if(!filter.matcher(name).find()) return;
+        int counter = 0;
+        for(int w = 0; w < warmup; w++) counter = iterate(op, counter, null);
+        double[] nsPerOp = new double[iterations];
+        for(int it = 0; it < iterations; it++) {
+            long[] stats = new long[2];
+            counter = iterate(op, counter, stats);
+            nsPerOp[it] = (double) stats[0] / stats[1];
+        }
+        double mean = 0, var = 0;
+        for(double v : nsPerOp) mean += v / nsPerOp.length;
+        for(double v : nsPerOp) var += (v - mean) * (v - mean) / Math.max(1, nsPerOp.length - 1);
+        System.out.printf("%-32s %14.1f %12.1f%n", name, mean, Math.sqrt(var));
+    }
+
+    int iterate(Op op, int counter, long[] stats) throws Exception {
+        long start = System.nanoTime(), elapsed;
+        int ops = 0, acc = 0, batch = 1;
+        do {
+            for(int b = 0; b < batch; b++) {
+                Object r = op.run(counter++ & 0x7fffffff);
+                acc += r == null ? 0 : r.hashCode();
+            }
+            ops += batch;
+            elapsed = System.nanoTime() - start;
+            // Fast operations run in batches so System.nanoTime stays out of the measurement
+            if(elapsed < 10_000L * ops) batch = 64;
+        } while(elapsed < iterationNanos);
+        sink += acc;
+        if(stats != null) {
+            stats[0] = elapsed;
+            stats[1] = ops;
+        }
+        return counter;
+    }
+
+    // Reproducible users, courses, enrollments, quizzes and results, written through DataManager like the app does
+    static class Dataset {
+        static class Shape {
+            final int students, teachers, courses, coursesPerStudent, quizzesPerCourse, questionsPerQuiz;
+            final double attemptRate;
+
+            Shape(int students, int teachers, int courses, int coursesPerStudent, int quizzesPerCourse, int questionsPerQuiz, double attemptRate) {
+                this.students = students;
+                this.teachers = teachers;
+                this.courses = courses;
+                this.coursesPerStudent = coursesPerStudent;
+                this.quizzesPerCourse = quizzesPerCourse;
+                this.questionsPerQuiz = questionsPerQuiz;
+                this.attemptRate = attemptRate;
+            }
+
+            static Shape of(String scale) {
+                switch(scale) {
+                    case "small": return new Shape(200, 5, 10, 3, 5, 10, 0.8);
+                    case "medium": return new Shape(2_000, 20, 60, 4, 10, 20, 0.8);
+                    case "large": return new Shape(20_000, 100, 400, 5, 12, 25, 0.8);
+                    default: throw new IllegalArgumentException("Unknown scale " + scale);
+                }
+            }
+        }
+
+        static final String[] WORDS = ("process thread memory cache kernel scheduler deadlock mutex semaphore paging " +
+                "virtual address segment interrupt context switch stack heap register pipeline branch latency " +
+                "throughput bandwidth disk inode journal file system network socket protocol").split(" ");
+
+        final Shape shape;
+        final long seed;
+        final Random rnd;
+        final long now = System.currentTimeMillis();
+        final ExamSystem.DataManager dm = new ExamSystem.DataManager();
+        final List<ExamSystem.Student> students = new ArrayList<>();
+        final List<ExamSystem.Teacher> teachers = new ArrayList<>();
+        final List<ExamSystem.Course> courses = new ArrayList<>();
+        final List<ExamSystem.Quiz> quizzes = new ArrayList<>();
+        final List<String[]> attempted = new ArrayList<>();    // quiz ID, username
+        int resultCount;
+
+        Dataset(Shape shape, long seed) {
+            this.shape = shape;
+            this.seed = seed;
+            this.rnd = new Random(seed);
+        }
+
+        Dataset generate() {
+            dm.load();
+            // One real hash shared by every account; hashing each one would dominate generation time
+            String hash = ExamSystem.Utils.hashPassword("password");
+            for(int i = 0; i < shape.teachers; i++) {
+                ExamSystem.Teacher t = new ExamSystem.Teacher("teacher" + i, "Teacher " + i, hash);
+                teachers.add(t);
+                dm.addUser(t);
+            }
+            for(int i = 0; i < shape.students; i++) {
+                ExamSystem.Student s = new ExamSystem.Student("student" + i, "Student " + i, hash);
+                students.add(s);
+                dm.addUser(s);
+            }
+            for(int i = 0; i < shape.courses; i++) {
+                ExamSystem.Course c = new ExamSystem.Course(String.format("CS%04d", i), "Course " + i);
+                courses.add(c);
+                dm.addCourse(c);
+            }
+            Map<ExamSystem.Course, List<ExamSystem.Student>> enrolled = new HashMap<>();
+            for(ExamSystem.Student s : students) {
+                for(int k = 0; k < shape.coursesPerStudent; k++) {
+                    ExamSystem.Course c = courses.get(rnd.nextInt(courses.size()));
+                    if(c.isStudentEnrolled(s.getUsername())) continue;
+                    dm.enrollStudent(c, s.getUsername());
+                    enrolled.computeIfAbsent(c, x -> new ArrayList<>()).add(s);
+                }
+            }
+            // Quizzes spread from a week ago to a week ahead, so some have ended and some are still open
+            for(ExamSystem.Course c : courses) {
+                for(int k = 0; k < shape.quizzesPerCourse; k++) {
+                    List<ExamSystem.Question> questions = new ArrayList<>();
+                    for(int q = 0; q < shape.questionsPerQuiz; q++) {
+                        ExamSystem.Question question = question();
+                        questions.add(question);
+                        dm.addQuestion(c.courseCode, question);
+                    }
+                    long start = now + (long) ((rnd.nextDouble() * 2 - 1) * TimeUnit.DAYS.toMillis(7));
+                    ExamSystem.Quiz quiz = new ExamSystem.Quiz(uuid(), c.courseCode, new Date(start), 30 + rnd.nextInt(90), questions);
+                    quizzes.add(quiz);
+                    dm.addQuiz(quiz);
+                    if(start > now) continue;
+                    for(ExamSystem.Student s : enrolled.getOrDefault(c, Collections.emptyList())) {
+                        if(rnd.nextDouble() >= shape.attemptRate) continue;
+                        ExamSystem.Result r = new ExamSystem.Result(quiz.id, s.getUsername());
+                        r.sheet = ExamSystem.AnswerSheet.of(quiz, answers(quiz, rnd));
+                        r.marksObtained = quiz.grade(r.sheet);
+                        dm.addResult(r);
+                        attempted.add(new String[]{quiz.id, s.getUsername()});
+                        resultCount++;
+                    }
+                }
+            }
+            dm.save().join();
+            return this;
+        }
+
+        ExamSystem.Question question() {
+            String id = uuid(), text = sentence(8);
+            int kind = rnd.nextInt(10);
+            if(kind < 5) {
+                List<String> options = new ArrayList<>();
+                for(int i = 0; i < 4; i++) options.add(sentence(3));
+                return new ExamSystem.MCQQuestion(id, text, 1 + rnd.nextInt(3), options, rnd.nextInt(4));
+            }
+            if(kind < 8) return new ExamSystem.TrueFalseQuestion(id, text, 1, rnd.nextBoolean());
+            List<String> keywords = new ArrayList<>();
+            for(int i = 0, n = 2 + rnd.nextInt(5); i < n; i++) keywords.add(WORDS[rnd.nextInt(WORDS.length)]);
+            return new ExamSystem.ShortAnswerQuestion(id, text, 5, keywords);
+        }
+
+        // Answers keyed by question ID as QuizAttemptFrame collects them; about one in ten is left blank
+        Map<String, String> answers(ExamSystem.Quiz quiz, Random rnd) {
+            Map<String, String> answers = new HashMap<>();
+            for(ExamSystem.Question q : quiz.questions)
+                if(rnd.nextInt(10) > 0) answers.put(q.getId(), answer(q, rnd));
+            return answers;
+        }
+
+        String answer(ExamSystem.Question q, Random rnd) {
+            if(q instanceof ExamSystem.MCQQuestion) return String.valueOf(rnd.nextInt(4));
+            if(q instanceof ExamSystem.TrueFalseQuestion) return String.valueOf(rnd.nextBoolean());
+            return sentence(20 + rnd.nextInt(80), rnd);
+        }
+
+        String sentence(int words) {
+            return sentence(words, rnd);
+        }
+
+        static String sentence(int words, Random rnd) {
+            StringBuilder sb = new StringBuilder();
+            for(int i = 0; i < words; i++) {
+                if(i > 0) sb.append(' ');
+                sb.append(WORDS[rnd.nextInt(WORDS.length)]);
+            }
+            return sb.toString();
+        }
+
+        String uuid() {
+            return new UUID(rnd.nextLong(), rnd.nextLong()).toString();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stores written by the ObjectOutputStream format and by every earlier codec version load with the same content,
+ * and the next save rewrites them in the current version.
+ */
+class FormatMigrationTest {
+    static final File FILE = new File("examdata.bin");
+
+    ExamSystem.Teacher tom;
+    ExamSystem.Student alice;
+    ExamSystem.Course course;
+    ExamSystem.MCQQuestion q1;
+    ExamSystem.TrueFalseQuestion q2;
+    ExamSystem.Quiz quiz;
+    ExamSystem.Result result;
+
+    @BeforeEach
+    void setUp() {
+        for(String name : new String[]{"examdata.bin", "examdata.journal"}) new File(name).delete();
+        tom = new ExamSystem.Teacher("tom", "Tom", "hash-t");
+        alice = new ExamSystem.Student("alice", "Alice", "hash-a");
+        course = new ExamSystem.Course("CS101", "Programming");
+        course.enrollStudent("alice");
+        q1 = new ExamSystem.MCQQuestion("q1", "Pick B", 2, List.of("A", "B", "C"), 1);
+        q2 = new ExamSystem.TrueFalseQuestion("q2", "Java is typed", 1, true);
+        for(ExamSystem.Question q : List.of(q1, q2)) {
+            q.courseCode = "CS101";
+            q.version = 1;
+        }
+        quiz = new ExamSystem.Quiz("quiz-1", "CS101", new Date(1_700_000_000_000L), 60, List.of(q1, q2));
+        quiz.shuffleSeed = 7;
+        // B and True, with True stored as 1 the way every format before version 6 did
+        result = new ExamSystem.Result(quiz.id, "alice");
+        result.sheet = new ExamSystem.AnswerSheet(new byte[]{1, 1}, new String[0]);
+        result.marksObtained = 3;
+    }
+
+    ExamSystem.DataManager load() {
+        ExamSystem.DataManager dm = new ExamSystem.DataManager();
+        dm.load();
+        return dm;
+    }
+
+    void assertFixture(ExamSystem.DataManager dm) {
+        assertEquals(ExamSystem.User.Role.TEACHER, dm.getUserByUsername("tom").getRole());
+        assertEquals("hash-a", dm.getUserByUsername("alice").getPasswordHash());
+        assertTrue(dm.getCourseByCode("CS101").isStudentEnrolled("alice"));
+        ExamSystem.Quiz loaded = dm.getQuizById(quiz.id);
+        assertEquals(quiz.startTime, loaded.startTime);
+        assertEquals(List.of("q1", "q2"), loaded.questions.stream().map(q -> q.id).toList());
+        assertEquals(List.of("A", "B", "C"), loaded.questions.get(0).getOptions());
+        ExamSystem.Result r = dm.getResult(quiz.id, "alice");
+        assertArrayEquals(new byte[]{1, 0}, r.sheet.choices);
+        assertEquals(3, r.marksObtained);
+        assertEquals(3, loaded.grade(r.sheet));
+    }
+
+    void assertMigrates() throws IOException {
+        assertFixture(load());
+        ExamSystem.DataManager dm = load();
+        for(byte type : ExamSystem.DataManager.SECTIONS) dm.materialize(type);
+        dm.save().join();
+        assertFalse(ExamSystem.Codec.isLegacy(FILE));
+        assertEquals(ExamSystem.Codec.VERSION, ExamSystem.FileStorage.snapshotVersion(FILE));
+        assertFixture(load());
+    }
+
+    @Test
+    void objectStreamStore() throws Exception {
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(FILE))) {
+            out.writeObject(new ArrayList<>(List.of(tom, alice)));
+            out.writeObject(new ArrayList<>(List.of(course)));
+            out.writeObject(new ArrayList<>(List.of(q1, q2)));
+            out.writeObject(new ArrayList<>(List.of(quiz)));
+            out.writeObject(new ArrayList<>(List.of(result)));
+        }
+        assertTrue(ExamSystem.Codec.isLegacy(FILE));
+        assertMigrates();
+    }
+
+    @Test
+    void everyEarlierCodecVersion() throws Exception {
+        for(int version = 1; version < 6; version++) {
+            writeSnapshot(version);
+            assertEquals(version, ExamSystem.FileStorage.snapshotVersion(FILE));
+            assertMigrates();
+            new File("examdata.journal").delete();
+        }
+    }
+
+    // The fixture laid out the way the writer of the given version did
+    void writeSnapshot(int version) throws IOException {
+        List<Object[]> sections = List.of(
+                new Object[]{ExamSystem.Journal.USER, List.of(tom, alice)},
+                new Object[]{ExamSystem.Journal.COURSE, List.of(course)},
+                new Object[]{ExamSystem.Journal.QUESTION, List.of(q1, q2)},
+                new Object[]{ExamSystem.Journal.QUIZ, List.of(quiz)},
+                new Object[]{ExamSystem.Journal.RESULT, List.of(result)});
+        try (ExamSystem.Codec.CountingOutputStream counter = new ExamSystem.Codec.CountingOutputStream(new FileOutputStream(FILE));
+             DataOutputStream out = new DataOutputStream(counter)) {
+            ExamSystem.Codec.Writer w = new ExamSystem.Codec.Writer(out);
+            out.writeInt(ExamSystem.Codec.MAGIC);
+            w.varint(version);
+            List<long[]> table = new ArrayList<>();
+            for(Object[] section : sections) {
+                // Version 1 is one stream with one dictionary; later versions start each section afresh
+                if(version > 1) w = new ExamSystem.Codec.Writer(out);
+                long start = counter.count;
+                List<?> items = (List<?>) section[1];
+                w.varint(items.size());
+                for(Object item : items) record(w, (Byte) section[0], item, version);
+                table.add(new long[]{(Byte) section[0], start, counter.count - start});
+            }
+            if(version == 1) return;
+            long tableOffset = counter.count;
+            new ExamSystem.Codec.Writer(out).varint(table.size());
+            for(long[] entry : table) {
+                out.writeByte((int) entry[0]);
+                out.writeLong(entry[1]);
+                out.writeLong(entry[2]);
+            }
+            out.writeLong(tableOffset);
+            out.writeInt(ExamSystem.Codec.MAGIC);
+        }
+    }
+
+    static void record(ExamSystem.Codec.Writer w, byte type, Object item, int version) throws IOException {
+        if(type == ExamSystem.Journal.QUESTION && version < 4) {
+            question(w, (ExamSystem.Question) item);
+        } else if(type == ExamSystem.Journal.QUIZ && version < 5) {
+            ExamSystem.Quiz q = (ExamSystem.Quiz) item;
+            w.string(q.id);
+            w.string(q.courseCode);
+            w.varlong(q.startTime.getTime());
+            w.varint(q.durationMinutes);
+            w.varint(q.questions.size());
+            for(ExamSystem.Question question : q.questions) {
+                if(version < 4) {
+                    question(w, question);
+                } else {
+                    w.string(question.id);
+                    w.varint(question.version);
+                }
+            }
+        } else if(type == ExamSystem.Journal.RESULT && version < 3) {
+            ExamSystem.Result r = (ExamSystem.Result) item;
+            w.string(r.quizId);
+            w.string(r.studentUsername);
+            w.varint(r.marksObtained);
+            w.varint(2);
+            w.string("q1");
+            w.string("1");
+            w.string("q2");
+            w.string("true");
+        } else {
+            w.record(type, item);
+        }
+    }
+
+    // Before version 4 a question carried neither its course nor a version
+    static void question(ExamSystem.Codec.Writer w, ExamSystem.Question q) throws IOException {
+        boolean mcq = q instanceof ExamSystem.MCQQuestion;
+        w.out.writeByte(mcq ? ExamSystem.Codec.MCQ : ExamSystem.Codec.TRUE_FALSE);
+        w.string(q.id);
+        w.string(q.questionText);
+        w.varint(q.marks);
+        if(mcq) {
+            w.strings(((ExamSystem.MCQQuestion) q).options);
+            w.varint(((ExamSystem.MCQQuestion) q).correctIndex);
+        } else {
+            w.out.writeBoolean(((ExamSystem.TrueFalseQuestion) q).correctAnswer);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JdbcStorage against an in-memory H2 database, which lives as long as the test JVM so each test takes a fresh one.
+ * The file store is cleared too, since an empty database is filled from it.
+ */
+class JdbcStorageTest {
+    static int databases;
+    String url;
+    ExamSystem.DataManager dm;
+    ExamSystem.Quiz quiz;
+
+    @BeforeEach
+    void setUp() {
+        for(String name : new String[]{"examdata.bin", "examdata.journal"}) new File(name).delete();
+        url = "jdbc:h2:mem:exam" + (++databases) + ";DB_CLOSE_DELAY=-1";
+    }
+
+    ExamSystem.DataManager open(String storage) {
+        System.setProperty("exam.storage", storage);
+        try {
+            ExamSystem.DataManager opened = new ExamSystem.DataManager();
+            opened.load();
+            return opened;
+        } finally {
+            System.clearProperty("exam.storage");
+        }
+    }
+
+    // Two students, one quiz with a wrong key, and alice's result
+    void populate(ExamSystem.DataManager dm) {
+        this.dm = dm;
+        dm.addUser(new ExamSystem.Student("alice", "Alice", "hash-a")).join();
+        dm.addUser(new ExamSystem.Student("bob", "Bob", "hash-b")).join();
+        dm.addCourse(new ExamSystem.Course("CS101", "Programming")).join();
+        dm.enrollStudent(dm.getCourseByCode("CS101"), "alice").join();
+        dm.addQuestion("CS101", new ExamSystem.MCQQuestion("q1", "2 + 2 = ?", 5, List.of("3", "4", "5"), 0)).join();
+        dm.addQuestion("CS101", new ExamSystem.TrueFalseQuestion("q2", "Java is typed", 1, true)).join();
+        quiz = new ExamSystem.Quiz("quiz-1", "CS101", new Date(), 60, new ArrayList<>(dm.getQuestionBank("CS101")));
+        dm.addQuiz(quiz).join();
+        submit("alice", "1", "true");
+    }
+
+    void submit(String username, String q1, String q2) {
+        ExamSystem.Result r = new ExamSystem.Result(quiz.id, username);
+        r.sheet = ExamSystem.AnswerSheet.of(quiz, Map.of("q1", q1, "q2", q2));
+        r.marksObtained = quiz.grade(r.sheet);
+        dm.addResult(r).join();
+    }
+
+    int count(String table) throws SQLException {
+        try (Connection c = DriverManager.getConnection(url);
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    void assertPopulated(ExamSystem.DataManager loaded) {
+        assertEquals("hash-a", loaded.getUserByUsername("alice").getPasswordHash());
+        assertTrue(loaded.getCourseByCode("CS101").enrolledStudents.contains("alice"));
+        assertEquals(List.of("q1", "q2"), loaded.getQuizById(quiz.id).questions.stream().map(q -> q.id).toList());
+        assertEquals(1, loaded.getResult(quiz.id, "alice").marksObtained);
+    }
+
+    @Test
+    void createsTheSchemaAndWritesARowPerRecord() throws SQLException {
+        populate(open(url));
+        assertEquals(2, count("users"));
+        assertEquals(1, count("courses"));
+        assertEquals(1, count("enrollments"));
+        assertEquals(2, count("questions"));
+        assertEquals(1, count("quizzes"));
+        assertEquals(1, count("results"));
+    }
+
+    @Test
+    void reloadsEverythingAndLeavesResultsInTheDatabaseUntilAsked() {
+        populate(open(url));
+        dm.updatePasswordHash(dm.getUserByUsername("bob"), "hash-b", "hash-b2").join();
+
+        ExamSystem.DataManager reloaded = open(url);
+        assertEquals(Set.of(ExamSystem.Journal.QUESTION, ExamSystem.Journal.QUIZ, ExamSystem.Journal.RESULT),
+                reloaded.store.unloaded.keySet());
+        assertEquals("hash-b2", reloaded.getUserByUsername("bob").getPasswordHash());
+        // Quizzes bring their questions in, but not the results
+        assertNotNull(reloaded.getQuizById(quiz.id));
+        assertTrue(reloaded.store.unloaded.containsKey(ExamSystem.Journal.RESULT));
+        assertPopulated(reloaded);
+        assertTrue(reloaded.store.unloaded.isEmpty());
+    }
+
+    @Test
+    void recordsWrittenAfterLoadAreNotReadTwice() {
+        populate(open(url));
+        ExamSystem.DataManager reloaded = open(url);
+        dm = reloaded;
+        quiz = reloaded.getQuizById(quiz.id);
+        assertTrue(reloaded.store.unloaded.containsKey(ExamSystem.Journal.RESULT));
+        submit("bob", "0", "true");
+
+        assertEquals(2, reloaded.getResultsByQuiz(quiz.id).size());
+        assertEquals(6, reloaded.getResult(quiz.id, "bob").marksObtained);
+    }
+
+    @Test
+    void regradeAndCompactionSurviveAReload() throws SQLException {
+        populate(open(url));
+        submit("bob", "0", "true");
+        dm.addQuestion("CS101", new ExamSystem.MCQQuestion("q1", "2 + 2 = ?", 5, List.of("3", "4", "5"), 1)).join();
+        List<ExamSystem.Question> latest = dm.latestQuestions(quiz);
+        dm.applyRegrade(ExamSystem.Regrader.regrade(quiz, latest, dm.getResultsByQuiz(quiz.id), null), latest).join();
+
+        ExamSystem.DataManager regraded = open(url);
+        assertEquals(2, regraded.getQuizById(quiz.id).questions.get(0).version);
+        assertEquals(6, regraded.getResult(quiz.id, "alice").marksObtained);
+        assertEquals(1, regraded.getResult(quiz.id, "bob").marksObtained);
+
+        dm.save().join();
+        assertEquals(3, count("questions"));
+        assertEquals(2, count("results"));
+        ExamSystem.DataManager compacted = open(url);
+        assertTrue(compacted.store.unloaded.containsKey(ExamSystem.Journal.RESULT));
+        assertEquals(2, compacted.getQuizById(quiz.id).questions.get(0).version);
+        assertEquals(6, compacted.getResult(quiz.id, "alice").marksObtained);
+        assertEquals(3.5, compacted.getQuizStats(quiz.id).mean(), 1e-9);
+        assertTrue(compacted.getCourseByCode("CS101").enrolledStudents.contains("alice"));
+    }
+
+    @Test
+    void anEmptyDatabaseIsFilledFromTheFileStoreOnce() throws SQLException {
+        ExamSystem.DataManager files = open("file");
+        populate(files);
+        files.save().join();
+        dm.addUser(new ExamSystem.Student("carol", "Carol", "hash-c")).join();
+
+        ExamSystem.DataManager migrated = open(url);
+        assertPopulated(migrated);
+        assertNotNull(migrated.getUserByUsername("carol"));
+        assertEquals(3, count("users"));
+        assertEquals(1, count("results"));
+
+        // Rows in the database win from then on
+        migrated.addUser(new ExamSystem.Student("dave", "Dave", "hash-d")).join();
+        ExamSystem.DataManager reopened = open(url);
+        assertNotNull(reopened.getUserByUsername("dave"));
+        assertEquals(4, count("users"));
+        assertEquals(1, count("results"));
+    }
+}
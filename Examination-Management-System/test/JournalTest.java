@@ -0,0 +1,91 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Mutations are journaled and replayed on the next load; a crash part way through an append leaves a torn tail,
+ * which load cuts off so the journal stays appendable.
+ */
+class JournalTest {
+    static final File JOURNAL = new File("examdata.journal");
+
+    @BeforeEach
+    void setUp() {
+        for(String name : new String[]{"examdata.bin", "examdata.journal"}) new File(name).delete();
+        ExamSystem.DataManager dm = new ExamSystem.DataManager();
+        dm.load();
+        dm.addUser(new ExamSystem.Student("alice", "Alice", "hash-a")).join();
+        dm.addCourse(new ExamSystem.Course("CS101", "Programming")).join();
+        dm.enrollStudent(dm.getCourseByCode("CS101"), "alice").join();
+        dm.updatePasswordHash(dm.getUserByUsername("alice"), "hash-a", "hash-a2").join();
+    }
+
+    ExamSystem.DataManager reload() {
+        ExamSystem.DataManager dm = new ExamSystem.DataManager();
+        dm.load();
+        return dm;
+    }
+
+    void append(byte[] bytes) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(JOURNAL, true)) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    void replaysEveryRecordWithoutASnapshot() {
+        assertFalse(new File("examdata.bin").exists());
+        ExamSystem.DataManager dm = reload();
+        assertEquals("hash-a2", dm.getUserByUsername("alice").getPasswordHash());
+        assertTrue(dm.getCourseByCode("CS101").isStudentEnrolled("alice"));
+        assertEquals(List.of("CS101"), dm.getCoursesForStudent("alice").stream().map(c -> c.courseCode).toList());
+    }
+
+    @Test
+    void aTornTailIsCutOffAndLaterAppendsReplay() throws Exception {
+        long intact = JOURNAL.length();
+        byte[] frame = ExamSystem.Journal.encode(ExamSystem.Journal.USER, new ExamSystem.Student("bob", "Bob", "hash-b"));
+        append(Arrays.copyOf(frame, frame.length / 2));
+
+        ExamSystem.DataManager dm = reload();
+        assertEquals(intact, JOURNAL.length());
+        assertNotNull(dm.getUserByUsername("alice"));
+        assertNull(dm.getUserByUsername("bob"));
+
+        dm.addUser(new ExamSystem.Student("carol", "Carol", "hash-c")).join();
+        ExamSystem.DataManager again = reload();
+        assertNotNull(again.getUserByUsername("alice"));
+        assertNotNull(again.getUserByUsername("carol"));
+    }
+
+    @Test
+    void aFrameWithABadChecksumEndsTheReplay() throws Exception {
+        long intact = JOURNAL.length();
+        byte[] bob = ExamSystem.Journal.encode(ExamSystem.Journal.USER, new ExamSystem.Student("bob", "Bob", "hash-b"));
+        bob[bob.length - 1] ^= 1;
+        append(bob);
+        append(ExamSystem.Journal.encode(ExamSystem.Journal.USER, new ExamSystem.Student("dave", "Dave", "hash-d")));
+
+        ExamSystem.DataManager dm = reload();
+        assertEquals(intact, JOURNAL.length());
+        assertNull(dm.getUserByUsername("bob"));
+        assertNull(dm.getUserByUsername("dave"));
+        assertEquals("hash-a2", dm.getUserByUsername("alice").getPasswordHash());
+    }
+
+    @Test
+    void compactionEmptiesTheJournal() {
+        ExamSystem.DataManager dm = reload();
+        dm.save().join();
+        assertEquals(0, JOURNAL.length());
+        ExamSystem.DataManager compacted = reload();
+        assertEquals("hash-a2", compacted.getUserByUsername("alice").getPasswordHash());
+        assertTrue(compacted.getCourseByCode("CS101").isStudentEnrolled("alice"));
+    }
+}
@@ -0,0 +1,71 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ShortAnswerQuestion grades with KeywordMatcher, which has to give the marks the original per-keyword
+ * toLowerCase().contains() check gave, in whatever default locale the application runs.
+ */
+class KeywordMatcherTest {
+    // Letters whose case mapping differs by locale or changes the string's length, next to plain ASCII
+    static final String ALPHABET = "abcIiİıΣσςßAB  .";
+
+    static int original(ExamSystem.ShortAnswerQuestion q, String answer) {
+        if(answer == null) return 0;
+        int found = 0;
+        for(String kw : q.keywords) if(answer.toLowerCase().contains(kw.toLowerCase())) found++;
+        return q.marks * found / q.keywords.size();
+    }
+
+    static String random(Random rnd, int max) {
+        StringBuilder sb = new StringBuilder();
+        for(int i = rnd.nextInt(max + 1); i > 0; i--) sb.append(ALPHABET.charAt(rnd.nextInt(ALPHABET.length())));
+        return sb.toString();
+    }
+
+    void check(Locale locale, int cases, int maxKeywords) {
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(locale);
+        try {
+            Random rnd = new Random(42);
+            for(int i = 0; i < cases; i++) {
+                String answer = random(rnd, 30);
+                List<String> keywords = new ArrayList<>();
+                for(int k = 1 + rnd.nextInt(maxKeywords); k > 0; k--) {
+                    // Half of them taken from the answer, so matches are common
+                    if(rnd.nextBoolean() && !answer.isEmpty()) {
+                        int from = rnd.nextInt(answer.length());
+                        keywords.add(answer.substring(from, Math.min(answer.length(), from + 1 + rnd.nextInt(4))));
+                    } else {
+                        keywords.add(random(rnd, 4));
+                    }
+                }
+                ExamSystem.ShortAnswerQuestion q = new ExamSystem.ShortAnswerQuestion("q", "?", 1 + rnd.nextInt(10), keywords);
+                assertEquals(original(q, answer), q.gradeAnswer(answer), () -> locale + " " + keywords + " in \"" + answer + "\"");
+            }
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test
+    void sameMarksAsContainsInEveryLocale() {
+        for(Locale locale : new Locale[]{Locale.ROOT, new Locale("tr", "TR"), new Locale("el", "GR")}) check(locale, 50_000, 8);
+    }
+
+    @Test
+    void sameMarksWithMoreThan64Keywords() {
+        check(Locale.ROOT, 2_000, 150);
+        check(new Locale("tr", "TR"), 2_000, 150);
+    }
+
+    @Test
+    void nullAndDuplicateKeywords() {
+        ExamSystem.ShortAnswerQuestion q = new ExamSystem.ShortAnswerQuestion("q", "?", 6, List.of("jvm", "JVM", "", "heap"));
+        assertEquals(0, q.gradeAnswer(null));
+        assertEquals(original(q, "The JVM"), q.gradeAnswer("The JVM"));
+        assertEquals(6, q.gradeAnswer("jvm heap"));
+    }
+}
@@ -0,0 +1,75 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Snapshot sections stay encoded until something reads them, including across a compaction.
+ */
+class LazySectionsTest {
+    ExamSystem.DataManager dm;
+    ExamSystem.Quiz quiz;
+
+    @BeforeEach
+    void setUp() {
+        for(String name : new String[]{"examdata.bin", "examdata.journal"}) new File(name).delete();
+        dm = new ExamSystem.DataManager();
+        dm.load();
+        dm.addCourse(new ExamSystem.Course("CS101", "Programming")).join();
+        dm.addQuestion("CS101", new ExamSystem.TrueFalseQuestion("q1", "Java is typed", 1, true)).join();
+        quiz = new ExamSystem.Quiz("quiz-1", "CS101", new Date(), 60, new ArrayList<>(dm.getQuestionBank("CS101")));
+        dm.addQuiz(quiz).join();
+        submit(dm, "alice", "true");
+        dm.save().join();
+        submit(dm, "bob", "false");
+    }
+
+    void submit(ExamSystem.DataManager dm, String username, String answer) {
+        ExamSystem.Result r = new ExamSystem.Result(quiz.id, username);
+        r.sheet = ExamSystem.AnswerSheet.of(quiz, Map.of("q1", answer));
+        r.marksObtained = quiz.grade(r.sheet);
+        dm.addResult(r).join();
+    }
+
+    ExamSystem.DataManager reload() {
+        ExamSystem.DataManager reloaded = new ExamSystem.DataManager();
+        reloaded.load();
+        return reloaded;
+    }
+
+    @Test
+    void compactionCopiesUnreadSectionsWithTheirHeldRecords() {
+        ExamSystem.DataManager reloaded = reload();
+        // bob's result came from the journal and waits on the unloaded section
+        assertEquals(Set.of(ExamSystem.Journal.QUESTION, ExamSystem.Journal.QUIZ, ExamSystem.Journal.RESULT),
+                reloaded.store.unloaded.keySet());
+        reloaded.save().join();
+        assertEquals(3, reloaded.store.unloaded.size());
+        assertEquals(0, new File("examdata.journal").length());
+
+        ExamSystem.DataManager compacted = reload();
+        assertTrue(compacted.store.unloaded.containsKey(ExamSystem.Journal.RESULT));
+        assertEquals(1, compacted.getResult(quiz.id, "alice").marksObtained);
+        assertEquals(0, compacted.getResult(quiz.id, "bob").marksObtained);
+        assertEquals(2, compacted.getResultsByQuiz(quiz.id).size());
+
+        // Once read, the next compaction writes the decoded section and no held records
+        compacted.save().join();
+        ExamSystem.DataManager again = reload();
+        assertEquals(2, again.getResultsByQuiz(quiz.id).size());
+        assertEquals(0.5, again.getQuizStats(quiz.id).mean(), 1e-9);
+    }
+
+    @Test
+    void heldRecordsSurviveRepeatedCompactions() {
+        ExamSystem.DataManager reloaded = reload();
+        reloaded.save().join();
+        reloaded.save().join();
+        reloaded = reload();
+        reloaded.save().join();
+        assertEquals(2, reload().getResultsByQuiz(quiz.id).size());
+    }
+}
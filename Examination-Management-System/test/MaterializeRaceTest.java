@@ -0,0 +1,103 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Results decoded on first use while other threads read them or store new ones. Each round reloads the snapshot,
+ * so the result section starts out unloaded, and starts its threads a few milliseconds apart so some of them land
+ * while the section is being decoded.
+ */
+class MaterializeRaceTest {
+    static final int STORED = 2000, THREADS = 32, ROUNDS = 10;
+    ExamSystem.Quiz quiz;
+
+    @BeforeEach
+    void setUp() {
+        for(String name : new String[]{"examdata.bin", "examdata.journal"}) new File(name).delete();
+        ExamSystem.DataManager dm = new ExamSystem.DataManager();
+        dm.load();
+        dm.addCourse(new ExamSystem.Course("CS101", "Programming")).join();
+        dm.addQuestion("CS101", new ExamSystem.TrueFalseQuestion("q1", "Java is typed", 1, true)).join();
+        quiz = new ExamSystem.Quiz("quiz-1", "CS101", new Date(), 60, new ArrayList<>(dm.getQuestionBank("CS101")));
+        dm.addQuiz(quiz).join();
+        CompletableFuture<?>[] stored = new CompletableFuture<?>[STORED];
+        for(int i = 0; i < STORED; i++) stored[i] = dm.addResult(result("stored" + i));
+        CompletableFuture.allOf(stored).join();
+        dm.save().join();
+    }
+
+    ExamSystem.Result result(String username) {
+        ExamSystem.Result r = new ExamSystem.Result(quiz.id, username);
+        r.sheet = ExamSystem.AnswerSheet.of(quiz, Map.of("q1", "true"));
+        r.marksObtained = 1;
+        return r;
+    }
+
+    ExamSystem.DataManager reload() {
+        ExamSystem.DataManager dm = new ExamSystem.DataManager();
+        dm.load();
+        dm.getQuizById(quiz.id);
+        assertTrue(dm.store.unloaded.containsKey(ExamSystem.Journal.RESULT));
+        return dm;
+    }
+
+    static void race(int threads, IntConsumerWithException body) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for(int t = 0; t < threads; t++) {
+            int tt = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                Thread.sleep(tt % 8);
+                body.accept(tt);
+                return null;
+            }));
+        }
+        start.countDown();
+        for(Future<?> f : futures) f.get(30, TimeUnit.SECONDS);
+        pool.shutdown();
+    }
+
+    interface IntConsumerWithException { void accept(int t) throws Exception; }
+
+    @Test
+    void readersNeverSeeAHalfDecodedSection() throws Exception {
+        for(int round = 0; round < ROUNDS; round++) {
+            ExamSystem.DataManager dm = reload();
+            AtomicInteger misses = new AtomicInteger();
+            race(THREADS, t -> {
+                if(dm.getResult(quiz.id, "stored" + (STORED - 1 - t)) == null) misses.incrementAndGet();
+            });
+            assertEquals(0, misses.get(), "round " + round);
+        }
+    }
+
+    // What a mutator does once it holds its stripe: apply to the store it read, which a reload may have just replaced
+    @Test
+    void recordsAppliedWhileTheSectionIsDecodedAreKept() throws Exception {
+        for(int round = 0; round < ROUNDS; round++) {
+            ExamSystem.DataManager dm = reload();
+            ExamSystem.DataManager.Store s = dm.store;
+            int r = round;
+            race(THREADS, t -> {
+                if(t == 0) {
+                    dm.materialize(s, ExamSystem.Journal.RESULT);
+                    return;
+                }
+                for(int i = 0; i < 50; i++) dm.apply(s, ExamSystem.Journal.RESULT, result("live" + r + "-" + t + "-" + i));
+            });
+            assertFalse(s.unloaded.containsKey(ExamSystem.Journal.RESULT));
+            for(int t = 1; t < THREADS; t++)
+                for(int i = 0; i < 50; i++)
+                    assertNotNull(dm.getResult(quiz.id, "live" + r + "-" + t + "-" + i), "round " + round + " live" + t + "-" + i);
+            assertEquals(STORED + (THREADS - 1) * 50, dm.getResultsByQuiz(quiz.id).size());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A student's paper shuffles questions and MCQ options from the quiz seed and the username; the answers they click
+ * are mapped back to the original option indices before grading.
+ */
+class PaperTest {
+    ExamSystem.Quiz quiz;
+
+    @BeforeEach
+    void setUp() {
+        quiz = quiz(1234);
+    }
+
+    static ExamSystem.Quiz quiz(long seed) {
+        List<ExamSystem.Question> questions = new ArrayList<>();
+        for(int i = 0; i < 8; i++)
+            questions.add(new ExamSystem.MCQQuestion("q" + i, "Question " + i, 1 + i, List.of("A", "B", "C", "D", "E"), i % 5));
+        questions.add(new ExamSystem.TrueFalseQuestion("tf", "Java is typed", 2, true));
+        ExamSystem.Quiz quiz = new ExamSystem.Quiz("quiz-1", "CS101", new Date(), 60, questions);
+        quiz.shuffleSeed = seed;
+        return quiz;
+    }
+
+    static void assertPermutation(int[] values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for(int i = 0; i < sorted.length; i++) assertEquals(i, sorted[i], () -> Arrays.toString(values));
+    }
+
+    @Test
+    void samePaperForTheSameSeedAndStudent() {
+        ExamSystem.Paper paper = ExamSystem.Paper.of(quiz, "alice");
+        assertSame(paper, ExamSystem.Paper.of(quiz, "alice"));
+        ExamSystem.Paper again = ExamSystem.Paper.of(quiz(1234), "alice");
+        assertArrayEquals(paper.order, again.order);
+        assertArrayEquals(paper.options, again.options);
+
+        ExamSystem.Paper bob = ExamSystem.Paper.of(quiz, "bob");
+        assertFalse(Arrays.equals(paper.order, bob.order) && Arrays.deepEquals(paper.options, bob.options));
+        ExamSystem.Paper reseeded = ExamSystem.Paper.of(quiz(99), "alice");
+        assertFalse(Arrays.equals(paper.order, reseeded.order) && Arrays.deepEquals(paper.options, reseeded.options));
+    }
+
+    @Test
+    void questionsAndOptionsArePermutations() {
+        for(String username : List.of("alice", "bob", "carol", "dave")) {
+            ExamSystem.Paper paper = ExamSystem.Paper.of(quiz, username);
+            assertPermutation(paper.order);
+            for(int q = 0; q < quiz.questions.size(); q++) {
+                int options = quiz.questions.get(q).getOptions().size();
+                if(!(quiz.questions.get(q) instanceof ExamSystem.MCQQuestion)) {
+                    assertNull(paper.options[q]);
+                    for(int o = 0; o < options; o++) assertEquals(o, paper.originalOption(q, o));
+                    continue;
+                }
+                int[] original = new int[options];
+                for(int shown = 0; shown < options; shown++) {
+                    original[shown] = paper.originalOption(q, shown);
+                    assertEquals(shown, paper.shownOption(q, original[shown]));
+                }
+                assertPermutation(original);
+            }
+        }
+    }
+
+    @Test
+    void unseededQuizzesAreNotShuffled() {
+        ExamSystem.Paper paper = ExamSystem.Paper.of(quiz(0), "alice");
+        for(int i = 0; i < paper.order.length; i++) {
+            assertEquals(i, paper.order[i]);
+            assertEquals(i % 5, paper.originalOption(i, i % 5));
+        }
+    }
+
+    // What QuizAttemptFrame does: the student clicks the right option where it is shown
+    @Test
+    void clickedAnswersGradeAgainstTheOriginalOptions() {
+        ExamSystem.Paper paper = ExamSystem.Paper.of(quiz, "alice");
+        Map<String, String> right = new HashMap<>(), wrong = new HashMap<>();
+        for(int shownPosition : paper.order) {
+            ExamSystem.Question q = quiz.questions.get(shownPosition);
+            int correct = q instanceof ExamSystem.MCQQuestion ? ((ExamSystem.MCQQuestion) q).correctIndex : 0;
+            int clicked = paper.shownOption(shownPosition, correct);
+            right.put(q.id, String.valueOf(paper.originalOption(shownPosition, clicked)));
+            wrong.put(q.id, String.valueOf(clicked == 0 ? 1 : 0));
+        }
+        assertEquals(quiz.getTotalMarks(), quiz.grade(ExamSystem.AnswerSheet.of(quiz, right)));
+        assertTrue(quiz.grade(ExamSystem.AnswerSheet.of(quiz, wrong)) < quiz.getTotalMarks());
+    }
+}
@@ -0,0 +1,70 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Passwords are stored as salted PBKDF2 hashes; a SHA-256 hash from before them, or one with fewer iterations than
+ * configured, still verifies and is replaced by a current hash at the next successful login.
+ */
+class PasswordHashTest {
+    ExamSystem.DataManager dm;
+
+    @BeforeEach
+    void setUp() {
+        for(String name : new String[]{"examdata.bin", "examdata.journal"}) new File(name).delete();
+        dm = new ExamSystem.DataManager();
+        dm.load();
+    }
+
+    ExamSystem.DataManager reload() {
+        ExamSystem.DataManager reloaded = new ExamSystem.DataManager();
+        reloaded.load();
+        return reloaded;
+    }
+
+    @Test
+    void pbkdf2HashesVerifyOnlyTheirPassword() {
+        String hash = ExamSystem.Utils.hashPassword("secret", 1000);
+        assertTrue(hash.startsWith(ExamSystem.Utils.PBKDF2_PREFIX + "1000$"));
+        assertTrue(ExamSystem.Utils.verifyPassword("secret", hash));
+        assertFalse(ExamSystem.Utils.verifyPassword("Secret", hash));
+        assertFalse(ExamSystem.Utils.verifyPassword("secret", null));
+        // Salted, so the same password never hashes the same twice
+        assertNotEquals(hash, ExamSystem.Utils.hashPassword("secret", 1000));
+        assertTrue(ExamSystem.Utils.needsRehash(hash));
+        assertFalse(ExamSystem.Utils.needsRehash(ExamSystem.Utils.hashPassword("secret")));
+    }
+
+    @Test
+    void legacySha256HashesVerifyAndNeedRehash() {
+        String legacy = ExamSystem.Utils.sha256("secret");
+        assertTrue(ExamSystem.Utils.verifyPassword("secret", legacy));
+        assertFalse(ExamSystem.Utils.verifyPassword("other", legacy));
+        assertTrue(ExamSystem.Utils.needsRehash(legacy));
+    }
+
+    @Test
+    void loginUpgradesALegacyHash() {
+        String legacy = ExamSystem.Utils.sha256("secret");
+        dm.addUser(new ExamSystem.Student("alice", "Alice", legacy)).join();
+        ExamSystem.User alice = dm.getUserByUsername("alice");
+
+        assertNull(dm.authenticate(alice, "wrong").join());
+        assertEquals(legacy, alice.getPasswordHash());
+
+        assertSame(alice, dm.authenticate(alice, "secret").join());
+        String upgraded = alice.getPasswordHash();
+        assertFalse(ExamSystem.Utils.needsRehash(upgraded));
+        assertTrue(ExamSystem.Utils.verifyPassword("secret", upgraded));
+
+        dm.save().join();
+        ExamSystem.DataManager reloaded = reload();
+        assertEquals(upgraded, reloaded.getUserByUsername("alice").getPasswordHash());
+        // A current hash is left alone
+        assertNotNull(reloaded.authenticate(reloaded.getUserByUsername("alice"), "secret").join());
+        assertEquals(upgraded, reloaded.getUserByUsername("alice").getPasswordHash());
+    }
+}
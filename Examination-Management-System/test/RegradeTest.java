@@ -0,0 +1,112 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fixing an answer key and regrading the cohort. Runs in the working directory Gradle gives the tests, where
+ * DataManager keeps examdata.bin and examdata.journal.
+ */
+class RegradeTest {
+    ExamSystem.DataManager dm;
+    ExamSystem.Quiz quiz;
+
+    @BeforeEach
+    void setUp() {
+        for(String name : new String[]{"examdata.bin", "examdata.journal"}) new File(name).delete();
+        dm = new ExamSystem.DataManager();
+        dm.load();
+        dm.addCourse(new ExamSystem.Course("CS101", "Programming")).join();
+        // Published with the wrong key: the answer is option 1, "4"
+        dm.addQuestion("CS101", new ExamSystem.MCQQuestion("q1", "2 + 2 = ?", 5, List.of("3", "4", "5"), 0)).join();
+        dm.addQuestion("CS101", new ExamSystem.TrueFalseQuestion("q2", "Java is typed", 1, true)).join();
+        quiz = new ExamSystem.Quiz("quiz-1", "CS101", new Date(), 60, new ArrayList<>(dm.getQuestionBank("CS101")));
+        dm.addQuiz(quiz).join();
+        submit("alice", "1", "true");
+        submit("bob", "1", "false");
+        submit("carol", "0", "true");
+    }
+
+    void submit(String username, String q1, String q2) {
+        ExamSystem.Result r = new ExamSystem.Result(quiz.id, username);
+        r.sheet = ExamSystem.AnswerSheet.of(quiz, Map.of("q1", q1, "q2", q2));
+        r.marksObtained = quiz.grade(r.sheet);
+        dm.addResult(r).join();
+    }
+
+    int marks(ExamSystem.DataManager dm, String username) {
+        return dm.getResult(quiz.id, username).marksObtained;
+    }
+
+    void fixKey() {
+        dm.addQuestion("CS101", new ExamSystem.MCQQuestion("q1", "2 + 2 = ?", 5, List.of("3", "4", "5"), 1)).join();
+    }
+
+    @Test
+    void regradeAgainstTheQuizsOwnVersionsIgnoresTheFix() {
+        fixKey();
+        ExamSystem.RegradeBatch batch = ExamSystem.Regrader.regrade(quiz, dm.getResultsByQuiz(quiz.id), null);
+        assertEquals(0, batch.marks.length);
+        assertEquals(1, quiz.questions.get(0).version);
+    }
+
+    @Test
+    void regradeAgainstTheFixedKeyChangesMarks() {
+        assertEquals(1, marks(dm, "alice"));
+        assertEquals(0, marks(dm, "bob"));
+        assertEquals(6, marks(dm, "carol"));
+        assertNull(dm.latestQuestions(quiz));
+
+        fixKey();
+        List<ExamSystem.Question> latest = dm.latestQuestions(quiz);
+        assertNotNull(latest);
+        assertEquals(2, latest.get(0).version);
+        ExamSystem.RegradeBatch batch = ExamSystem.Regrader.regrade(quiz, latest, dm.getResultsByQuiz(quiz.id), null);
+        assertEquals(3, batch.marks.length);
+        dm.applyRegrade(batch, latest).join();
+
+        assertEquals(6, marks(dm, "alice"));
+        assertEquals(5, marks(dm, "bob"));
+        assertEquals(1, marks(dm, "carol"));
+        assertEquals(2, quiz.questions.get(0).version);
+        ExamSystem.QuizStats stats = dm.getQuizStats(quiz.id);
+        assertEquals(3, stats.count);
+        assertEquals(1, stats.min);
+        assertEquals(6, stats.max);
+        assertEquals(4.0, stats.mean(), 1e-9);
+        // Every student now earns question 1's marks except carol
+        assertEquals(10.0 / 15, stats.difficulty(0, 5), 1e-9);
+
+        // Later submissions are graded against the fixed key too
+        submit("dave", "1", "true");
+        assertEquals(6, marks(dm, "dave"));
+    }
+
+    @Test
+    void rebindAndMarksSurviveReplayAndCompaction() {
+        // Snapshot first, so the regrade is replayed from the journal on top of lazily decoded sections
+        dm.save().join();
+        fixKey();
+        List<ExamSystem.Question> latest = dm.latestQuestions(quiz);
+        dm.applyRegrade(ExamSystem.Regrader.regrade(quiz, latest, dm.getResultsByQuiz(quiz.id), null), latest).join();
+
+        ExamSystem.DataManager replayed = new ExamSystem.DataManager();
+        replayed.load();
+        // The quiz is rebound as soon as quizzes are decoded, without waiting for the results
+        assertEquals(2, replayed.getQuizById(quiz.id).questions.get(0).version);
+        assertTrue(replayed.store.unloaded.containsKey(ExamSystem.Journal.RESULT));
+        assertEquals(6, marks(replayed, "alice"));
+        assertEquals(1, marks(replayed, "carol"));
+        assertEquals(4.0, replayed.getQuizStats(quiz.id).mean(), 1e-9);
+
+        dm.save().join();
+        ExamSystem.DataManager compacted = new ExamSystem.DataManager();
+        compacted.load();
+        assertEquals(2, compacted.getQuizById(quiz.id).questions.get(0).version);
+        assertEquals(5, marks(compacted, "bob"));
+        assertEquals(4.0, compacted.getQuizStats(quiz.id).mean(), 1e-9);
+    }
+}
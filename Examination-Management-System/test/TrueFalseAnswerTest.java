@@ -0,0 +1,91 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * True/False answers reach the answer sheet as option indices from QuizAttemptFrame and as "true"/"false" from the
+ * server and older stores; all of them must land on the same stored choice.
+ */
+class TrueFalseAnswerTest {
+    ExamSystem.DataManager dm;
+    ExamSystem.Quiz quiz;
+
+    @BeforeEach
+    void setUp() {
+        for(String name : new String[]{"examdata.bin", "examdata.journal"}) new File(name).delete();
+        dm = ExamSystem.dm = new ExamSystem.DataManager();
+        dm.load();
+        dm.addCourse(new ExamSystem.Course("CS101", "Programming")).join();
+        dm.addQuestion("CS101", new ExamSystem.TrueFalseQuestion("q1", "Java is typed", 2, true)).join();
+        dm.addQuestion("CS101", new ExamSystem.TrueFalseQuestion("q2", "Java is Python", 3, false)).join();
+        quiz = new ExamSystem.Quiz("quiz-1", "CS101", new Date(), 60, new ArrayList<>(dm.getQuestionBank("CS101")));
+        dm.addQuiz(quiz).join();
+    }
+
+    // What QuizAttemptFrame collects: the action command of the selected radio button, the original option index
+    Map<String, String> clicked(String q1, String q2) {
+        ExamSystem.Paper paper = ExamSystem.Paper.of(quiz, "student");
+        int[] original = {
+                paper.originalOption(0, quiz.questions.get(0).getOptions().indexOf(q1)),
+                paper.originalOption(1, quiz.questions.get(1).getOptions().indexOf(q2))
+        };
+        return Map.of("q1", String.valueOf(original[0]), "q2", String.valueOf(original[1]));
+    }
+
+    void submit(String username, Map<String, String> answers) {
+        ExamSystem.Result r = new ExamSystem.Result(quiz.id, username);
+        r.sheet = ExamSystem.AnswerSheet.of(quiz, answers);
+        r.marksObtained = quiz.grade(r.sheet);
+        dm.addResult(r).join();
+    }
+
+    @Test
+    void bothFrontEndsStoreTheSameChoice() {
+        ExamSystem.AnswerSheet gui = ExamSystem.AnswerSheet.of(quiz, clicked("True", "False"));
+        ExamSystem.AnswerSheet server = ExamSystem.AnswerSheet.of(quiz, Map.of("q1", "true", "q2", "FALSE"));
+        assertArrayEquals(new byte[]{0, 1}, gui.choices);
+        assertArrayEquals(gui.choices, server.choices);
+        assertEquals(5, quiz.grade(gui));
+        assertEquals("true", gui.answer(quiz, 0));
+        assertEquals("false", gui.answer(quiz, 1));
+        assertEquals(ExamSystem.AnswerSheet.INVALID, ExamSystem.AnswerSheet.of(quiz, Map.of("q1", "yes")).choices[0]);
+    }
+
+    @Test
+    void guiAnswersAreExportedAsClicked() throws Exception {
+        submit("alice", clicked("True", "False"));
+        submit("bob", clicked("False", "True"));
+        File csv = new File("tf.csv");
+        new ExamSystem.ResultExporter(List.of(quiz), csv).export((done, total) -> { }, () -> false);
+
+        List<String> rows = Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8);
+        assertEquals(3, rows.size());
+        assertEquals("quiz-1,CS101,alice,5,5,True,2,False,3", rows.get(1));
+        assertEquals("quiz-1,CS101,bob,0,5,False,0,True,0", rows.get(2));
+    }
+
+    @Test
+    void sheetsFromBeforeOptionIndicesAreConverted() throws Exception {
+        // Version 5 stored 1 for true
+        ExamSystem.Result old = new ExamSystem.Result(quiz.id, "carol");
+        old.sheet = new ExamSystem.AnswerSheet(new byte[]{1, 0}, new String[0]);
+        old.marksObtained = 5;
+        byte[] payload = ExamSystem.Journal.payload(ExamSystem.Journal.RESULT, old);
+        ExamSystem.Result read = (ExamSystem.Result) ExamSystem.Journal.decode(ExamSystem.Journal.RESULT, payload, 5);
+        dm.apply(dm.store, ExamSystem.Journal.RESULT, read);
+        assertArrayEquals(new byte[]{0, 1}, dm.getResult(quiz.id, "carol").sheet.choices);
+        assertEquals(5, quiz.grade(dm.getResult(quiz.id, "carol").sheet));
+
+        // Answer maps from the ObjectOutputStream store go through the same normalizer
+        ExamSystem.Result legacy = new ExamSystem.Result(quiz.id, "dave");
+        legacy.legacyAnswers = new HashMap<>(Map.of("q1", "0", "q2", "false"));
+        dm.apply(dm.store, ExamSystem.Journal.RESULT, legacy);
+        assertArrayEquals(new byte[]{0, 1}, dm.getResult(quiz.id, "dave").sheet.choices);
+    }
+}